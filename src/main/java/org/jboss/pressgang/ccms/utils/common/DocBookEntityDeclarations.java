@@ -0,0 +1,34 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.common;
+
+/**
+ * Holds the legacy DocBook entity declarations constant. Constants declared in an interface are only initialised when they are
+ * first read, so the entity table isn't loaded when {@link DocBookUtilities} is initialised.
+ */
+interface DocBookEntityDeclarations {
+    /**
+     * The entity declarations for the standard DocBook XML entities, separated by new lines.
+     *
+     * @deprecated Use {@link DocBookUtilities#getDocBookEntitiesString()} instead.
+     */
+    @Deprecated
+    String DOCBOOK_ENTITIES_STRING = DocBookUtilities.getDocBookEntitiesString();
+}
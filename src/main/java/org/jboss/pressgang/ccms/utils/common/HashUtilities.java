@@ -33,6 +33,8 @@ import org.slf4j.LoggerFactory;
  */
 public class HashUtilities {
     private final static Logger LOG = LoggerFactory.getLogger(HashUtilities.class);
+    private static final long FNV_64_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_64_PRIME = 0x100000001b3L;
 
     /**
      * Generates a MD5 Hash for a specific string
@@ -133,4 +135,52 @@ public class HashUtilities {
             return null;
         }
     }
+
+    /**
+     * Generates a 64 bit FNV-1a Hash for a specific string. The hash is calculated from the characters of the string, so it doesn't
+     * depend on the platform encoding or JVM, but it isn't a cryptographic hash.
+     *
+     * @param input The string to be hashed.
+     * @return The 64 bit FNV-1a hash of the input string.
+     */
+    public static long generateFNV1a64(final String input) {
+        return generateFNV1a64(FNV_64_OFFSET_BASIS, input);
+    }
+
+    /**
+     * Continues a 64 bit FNV-1a Hash with the characters of another string, so that a hash can be built from several strings
+     * without joining them.
+     *
+     * @param hash  The hash to continue, from a previous call to {@link #generateFNV1a64(String)}.
+     * @param input The string to add to the hash.
+     * @return The 64 bit FNV-1a hash of the combined input.
+     */
+    public static long generateFNV1a64(final long hash, final String input) {
+        long retValue = hash;
+        for (int i = 0; i < input.length(); ++i) {
+            final char c = input.charAt(i);
+            retValue = (retValue ^ (c & 0xFF)) * FNV_64_PRIME;
+            retValue = (retValue ^ (c >>> 8)) * FNV_64_PRIME;
+        }
+
+        return retValue;
+    }
+
+    /**
+     * Mixes the bits of a 64 bit hash, so that every bit of the input affects every bit of the output (the MurmurHash3 finalizer).
+     * This can be used to create a family of hash functions from a single hash, by mixing the hash with a different seed for each
+     * function.
+     *
+     * @param hash The hash to mix.
+     * @return The mixed hash.
+     */
+    public static long mix64(final long hash) {
+        long retValue = hash;
+        retValue ^= retValue >>> 33;
+        retValue *= 0xff51afd7ed558ccdL;
+        retValue ^= retValue >>> 33;
+        retValue *= 0xc4ceb9fe1a85ec53L;
+        retValue ^= retValue >>> 33;
+        return retValue;
+    }
 }
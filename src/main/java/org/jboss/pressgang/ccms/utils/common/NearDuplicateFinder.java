@@ -0,0 +1,378 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+import org.jboss.pressgang.ccms.utils.common.ParallelUtilities.IndexedTask;
+import org.w3c.dom.Document;
+
+/**
+ * Finds duplicate and near duplicate texts (such as topics) in a large corpus, without comparing every pair of texts.
+ * <p/>
+ * Each text is split into words, and the overlapping sequences of words (shingles) are hashed. A MinHash signature is then made from
+ * the smallest hash of the shingles under each function in a family of hash functions, so the fraction of values two signatures
+ * share estimates how many shingles the texts share. The signatures are split into bands, and any texts that have an identical band
+ * become candidates (Locality Sensitive Hashing). Only the candidates are then compared using the exact Damerau-Levenshtein
+ * similarity, so the amount of work grows with the number of texts and similar pairs, rather than the square of the number of texts.
+ * <p/>
+ * With the default 20 bands of 5 rows, two texts that share 70% of their shingles have a 97% chance of being compared, while texts
+ * that share 20% of their shingles have a 0.6% chance.
+ */
+public class NearDuplicateFinder {
+    private static final int DEFAULT_SHINGLE_SIZE = 3;
+    private static final int DEFAULT_BANDS = 20;
+    private static final int DEFAULT_ROWS = 5;
+    /**
+     * The seed for the hash functions, so the signatures are the same for every instance.
+     */
+    private static final long HASH_FAMILY_SEED = 0x2545F4914F6CDD1DL;
+
+    private final double minSimilarity;
+    private final int shingleSize;
+    private final int bands;
+    private final int rows;
+    private final long[] hashMultipliers;
+    private final long[] hashIncrements;
+
+    /**
+     * @param minSimilarity The minimum Damerau-Levenshtein similarity for two texts to be considered duplicates, between 0 and 1.0.
+     */
+    public NearDuplicateFinder(final double minSimilarity) {
+        this(minSimilarity, DEFAULT_SHINGLE_SIZE, DEFAULT_BANDS, DEFAULT_ROWS);
+    }
+
+    /**
+     * @param minSimilarity The minimum Damerau-Levenshtein similarity for two texts to be considered duplicates, between 0 and 1.0.
+     * @param shingleSize   The number of words in each shingle.
+     * @param bands         The number of bands to split the signatures into.
+     * @param rows          The number of signature values in each band. More rows means fewer candidates, but texts need to be
+     *                      more similar to be found.
+     */
+    public NearDuplicateFinder(final double minSimilarity, final int shingleSize, final int bands, final int rows) {
+        if (minSimilarity < 0 || minSimilarity > 1.0) throw new IllegalArgumentException("minSimilarity must be between 0 and 1.0");
+        if (shingleSize < 1) throw new IllegalArgumentException("shingleSize must be greater than 0");
+        if (bands < 1) throw new IllegalArgumentException("bands must be greater than 0");
+        if (rows < 1) throw new IllegalArgumentException("rows must be greater than 0");
+
+        this.minSimilarity = minSimilarity;
+        this.shingleSize = shingleSize;
+        this.bands = bands;
+        this.rows = rows;
+
+        // Each hash function is a multiply-shift of the mixed shingle hash, using a random odd multiplier
+        final Random random = new Random(HASH_FAMILY_SEED);
+        hashMultipliers = new long[bands * rows];
+        hashIncrements = new long[bands * rows];
+        for (int i = 0; i < hashMultipliers.length; i++) {
+            hashMultipliers[i] = random.nextLong() | 1L;
+            hashIncrements[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Find the duplicate topics in a set of topics. The topics are compared using their text content, so that differences in markup
+     * don't stop topics from being found, and so that the exact comparison doesn't have to include the markup.
+     *
+     * @param topics     The topics to compare, mapped by a key such as their id.
+     * @param numThreads The maximum number of threads to use.
+     * @return The pairs of topics that are duplicates, in the order the topics were given.
+     */
+    public <K> List<Duplicate<K>> findDuplicateTopics(final Map<K, Document> topics, final int numThreads) {
+        if (topics == null) throw new IllegalArgumentException("topics cannot be null");
+
+        final List<K> keys = new ArrayList<K>(topics.keySet());
+        final String[] texts = new String[keys.size()];
+        runInParallel(texts.length, numThreads, new IndexedTask() {
+            @Override
+            public void run(final int index) {
+                final Document topic = topics.get(keys.get(index));
+                texts[index] = topic == null || topic.getDocumentElement() == null ? "" : topic.getDocumentElement().getTextContent();
+            }
+        });
+
+        return findDuplicates(keys, texts, numThreads);
+    }
+
+    /**
+     * Find the duplicate texts in a set of texts, using as many threads as there are processors.
+     *
+     * @param texts The texts to compare, mapped by a key such as the id of the topic they came from.
+     * @return The pairs of texts that are duplicates, in the order the texts were given.
+     */
+    public <K> List<Duplicate<K>> findDuplicates(final Map<K, String> texts) {
+        return findDuplicates(texts, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Find the duplicate texts in a set of texts.
+     *
+     * @param texts      The texts to compare, mapped by a key such as the id of the topic they came from.
+     * @param numThreads The maximum number of threads to use.
+     * @return The pairs of texts that are duplicates, in the order the texts were given.
+     */
+    public <K> List<Duplicate<K>> findDuplicates(final Map<K, String> texts, final int numThreads) {
+        if (texts == null) throw new IllegalArgumentException("texts cannot be null");
+
+        final List<K> keys = new ArrayList<K>(texts.keySet());
+        final String[] textsArray = new String[keys.size()];
+        for (int i = 0; i < textsArray.length; i++) {
+            final String text = texts.get(keys.get(i));
+            textsArray[i] = text == null ? "" : text;
+        }
+
+        return findDuplicates(keys, textsArray, numThreads);
+    }
+
+    private <K> List<Duplicate<K>> findDuplicates(final List<K> keys, final String[] texts, final int numThreads) {
+        if (numThreads < 1) throw new IllegalArgumentException("numThreads must be greater than 0");
+
+        // Create the signatures
+        final int[][] signatures = new int[texts.length][];
+        runInParallel(texts.length, numThreads, new IndexedTask() {
+            @Override
+            public void run(final int index) {
+                signatures[index] = getSignature(texts[index]);
+            }
+        });
+
+        // Find the candidates for each band
+        final long[][] bandCandidates = new long[bands][];
+        runInParallel(bands, numThreads, new IndexedTask() {
+            @Override
+            public void run(final int index) {
+                bandCandidates[index] = getCandidates(signatures, index);
+            }
+        });
+        final long[] candidates = mergeCandidates(bandCandidates);
+
+        // Verify the candidates with the exact similarity
+        final double[] similarities = new double[candidates.length];
+        runInParallel(candidates.length, numThreads, new IndexedTask() {
+            @Override
+            public void run(final int index) {
+                similarities[index] = StringUtilities.similarDamerauLevenshtein(texts[(int) (candidates[index] >>> 32)],
+                        texts[(int) candidates[index]], minSimilarity);
+            }
+        });
+
+        final List<Duplicate<K>> duplicates = new ArrayList<Duplicate<K>>();
+        for (int i = 0; i < candidates.length; i++) {
+            if (similarities[i] >= 0) {
+                duplicates.add(new Duplicate<K>(keys.get((int) (candidates[i] >>> 32)), keys.get((int) candidates[i]), similarities[i]));
+            }
+        }
+
+        return duplicates;
+    }
+
+    /**
+     * Get the hashes of the shingles in a text. A text with fewer words than the shingle size is treated as a single shingle.
+     *
+     * @param text The text to get the shingles for.
+     * @return The distinct hashes of the shingles, in no particular order.
+     */
+    public long[] getShingleHashes(final String text) {
+        final List<String> words = getWords(text);
+        final int shingleCount = Math.max(1, words.size() - shingleSize + 1);
+        final long[] hashes = new long[shingleCount];
+        for (int i = 0; i < shingleCount; i++) {
+            long hash = HashUtilities.generateFNV1a64("");
+            for (int j = i; j < Math.min(words.size(), i + shingleSize); j++) {
+                hash = HashUtilities.generateFNV1a64(HashUtilities.generateFNV1a64(hash, words.get(j)), " ");
+            }
+            hashes[i] = HashUtilities.mix64(hash);
+        }
+
+        // Remove any repeated shingles, so they don't need to be hashed again
+        Arrays.sort(hashes);
+        int count = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                hashes[count++] = hashes[i];
+            }
+        }
+
+        return count == hashes.length ? hashes : Arrays.copyOf(hashes, count);
+    }
+
+    /**
+     * Get the MinHash signature of a text.
+     *
+     * @param text The text to get the signature for.
+     * @return The signature, which has one value for each row of each band.
+     */
+    public int[] getSignature(final String text) {
+        final long[] shingleHashes = getShingleHashes(text);
+        final int[] signature = new int[hashMultipliers.length];
+        for (int i = 0; i < signature.length; i++) {
+            final long multiplier = hashMultipliers[i];
+            final long increment = hashIncrements[i];
+            long min = Long.MAX_VALUE;
+            for (final long shingleHash : shingleHashes) {
+                // Compare as unsigned values, so the whole range of the hash is used
+                final long hash = (shingleHash * multiplier + increment) ^ Long.MIN_VALUE;
+                if (hash < min) min = hash;
+            }
+            signature[i] = (int) ((min ^ Long.MIN_VALUE) >>> 32);
+        }
+
+        return signature;
+    }
+
+    /**
+     * Split a text into lower case words, where a word is a sequence of letters and digits.
+     */
+    private static List<String> getWords(final String text) {
+        final List<String> words = new ArrayList<String>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordCharacter && start == -1) {
+                start = i;
+            } else if (!wordCharacter && start != -1) {
+                words.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Find the pairs of texts that have the same values in a band of their signatures.
+     *
+     * @return The pairs, with the index of the first text in the high 32 bits and the index of the second text in the low 32 bits.
+     */
+    private long[] getCandidates(final int[][] signatures, final int band) {
+        // Sort the texts by a hash of their band, so texts with the same band are next to each other
+        final long[] bandHashes = new long[signatures.length];
+        for (int i = 0; i < signatures.length; i++) {
+            long hash = band;
+            for (int j = band * rows; j < (band + 1) * rows; j++) {
+                hash = HashUtilities.mix64(hash ^ signatures[i][j]);
+            }
+            bandHashes[i] = (hash & 0xFFFFFFFF00000000L) | i;
+        }
+        Arrays.sort(bandHashes);
+
+        long[] candidates = new long[16];
+        int count = 0;
+        int start = 0;
+        for (int i = 1; i <= bandHashes.length; i++) {
+            if (i < bandHashes.length && (bandHashes[i] >>> 32) == (bandHashes[start] >>> 32)) continue;
+
+            for (int j = start; j < i; j++) {
+                for (int k = j + 1; k < i; k++) {
+                    final int first = (int) bandHashes[j];
+                    final int second = (int) bandHashes[k];
+                    // Hashes that only match in the bits used for sorting aren't candidates
+                    if (!isSameBand(signatures[first], signatures[second], band)) continue;
+
+                    if (count == candidates.length) candidates = Arrays.copyOf(candidates, count * 2);
+                    candidates[count++] = ((long) Math.min(first, second) << 32) | Math.max(first, second);
+                }
+            }
+            start = i;
+        }
+
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private boolean isSameBand(final int[] signature1, final int[] signature2, final int band) {
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            if (signature1[i] != signature2[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Merge the candidates from each band, removing any pairs that were found in more than one band.
+     */
+    private static long[] mergeCandidates(final long[][] bandCandidates) {
+        int total = 0;
+        for (final long[] candidates : bandCandidates) {
+            total += candidates.length;
+        }
+
+        final long[] merged = new long[total];
+        int position = 0;
+        for (final long[] candidates : bandCandidates) {
+            System.arraycopy(candidates, 0, merged, position, candidates.length);
+            position += candidates.length;
+        }
+        Arrays.sort(merged);
+
+        int count = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (i == 0 || merged[i] != merged[i - 1]) {
+                merged[count++] = merged[i];
+            }
+        }
+
+        return Arrays.copyOf(merged, count);
+    }
+
+    private static void runInParallel(final int count, final int numThreads, final IndexedTask task) {
+        try {
+            ParallelUtilities.runInParallel(count, numThreads, task);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (final ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * A pair of texts that were found to be duplicates.
+     */
+    public static class Duplicate<K> {
+        private final K first;
+        private final K second;
+        private final double similarity;
+
+        public Duplicate(final K first, final K second, final double similarity) {
+            this.first = first;
+            this.second = second;
+            this.similarity = similarity;
+        }
+
+        public K getFirst() {
+            return first;
+        }
+
+        public K getSecond() {
+            return second;
+        }
+
+        /**
+         * @return The Damerau-Levenshtein similarity of the texts, between 0 and 1.0.
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class ParallelUtilities {
+    /**
+     * A task that is run once for each index.
+     */
+    public interface IndexedTask {
+        void run(int index) throws Exception;
+    }
+
+    /**
+     * Creates the task used by each thread, so that a thread can reuse state (such as a Transformer) between indexes.
+     */
+    public interface IndexedTaskFactory {
+        IndexedTask newTask();
+    }
+
+    private ParallelUtilities() {
+    }
+
+    /**
+     * Run a task for each index, using a fixed number of threads that each take the next index until they are all done.
+     *
+     * @see #runInParallel(int, int, IndexedTaskFactory)
+     */
+    public static void runInParallel(final int count, final int numThreads, final IndexedTask task) throws InterruptedException,
+            ExecutionException {
+        if (task == null) throw new IllegalArgumentException("task cannot be null");
+
+        runInParallel(count, numThreads, new IndexedTaskFactory() {
+            @Override
+            public IndexedTask newTask() {
+                return task;
+            }
+        });
+    }
+
+    /**
+     * Run a task for each index, using a fixed number of threads that each take the next index until they are all done. Each thread
+     * gets its own task from the factory. If only one thread is needed, the tasks are run on the calling thread.
+     *
+     * @param count       The number of indexes to run the task for.
+     * @param numThreads  The maximum number of threads to use.
+     * @param taskFactory The factory that creates the task for each thread.
+     * @throws InterruptedException Thrown if the calling thread is interrupted while waiting for the tasks to finish.
+     * @throws ExecutionException   Thrown if a task throws an exception, in which case no more indexes are started.
+     */
+    public static void runInParallel(final int count, final int numThreads, final IndexedTaskFactory taskFactory)
+            throws InterruptedException, ExecutionException {
+        if (numThreads < 1) throw new IllegalArgumentException("numThreads must be greater than 0");
+        if (taskFactory == null) throw new IllegalArgumentException("taskFactory cannot be null");
+
+        final int threadCount = Math.min(numThreads, count);
+        if (threadCount == 0) {
+            return;
+        } else if (threadCount == 1) {
+            final IndexedTask task = taskFactory.newTask();
+            for (int i = 0; i < count; i++) {
+                try {
+                    task.run(i);
+                } catch (final Exception ex) {
+                    throw new ExecutionException(ex);
+                }
+            }
+            return;
+        }
+
+        final AtomicInteger nextIndex = new AtomicInteger(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<?>> workers = new ArrayList<Future<?>>();
+            for (int i = 0; i < threadCount; i++) {
+                workers.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        final IndexedTask task = taskFactory.newTask();
+                        int index;
+                        while ((index = nextIndex.getAndIncrement()) < count) {
+                            try {
+                                task.run(index);
+                            } catch (final Exception ex) {
+                                // Stop the other threads from starting any more indexes
+                                nextIndex.set(count);
+                                throw ex;
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (final Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
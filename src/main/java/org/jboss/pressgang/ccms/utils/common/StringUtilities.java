@@ -22,15 +22,23 @@ package org.jboss.pressgang.ccms.utils.common;
 import java.io.UnsupportedEncodingException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.commons.lang.StringUtils;
-
 public class StringUtilities {
     private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s");
+    /**
+     * The largest buffer (in ints) that is kept between calls to the edit distance methods. Larger buffers are only used for a single
+     * call, so comparing very long strings doesn't leave a large buffer attached to the thread.
+     */
+    private static final int MAX_CACHED_BUFFER_SIZE = 1 << 16;
+    private static final ThreadLocal<int[][]> EDIT_DISTANCE_BUFFERS = new ThreadLocal<int[][]>() {
+        @Override
+        protected int[][] initialValue() {
+            return new int[8][0];
+        }
+    };
     private static char[] randomStringCharacters = new char[]{'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O',
             'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z'};
 
@@ -375,7 +383,31 @@ public class StringUtilities {
         }
 
         int bigLength = s1.length();
-        return (bigLength - StringUtils.getLevenshteinDistance(s2, s1)) / (double) bigLength;
+        return (bigLength - getLevenshteinDistance(s2, s1, bigLength)) / (double) bigLength;
+    }
+
+    /**
+     * Checks to see how similar two strings are using the Levenshtein distance algorithm, but only if they are at least as similar
+     * as a threshold. This is much faster than {@link #similarLevenshtein(String, String)} when most strings aren't similar, as the
+     * distance is only calculated as far as the threshold.
+     *
+     * @param s1            The first string to compare against.
+     * @param s2            The second string to compare against.
+     * @param minSimilarity The minimum similarity, between 0 and 1.0.
+     * @return A value between minSimilarity and 1.0, where 1.0 is an exact match, or -1 if the strings are less similar than
+     *         minSimilarity.
+     */
+    public static double similarLevenshtein(final String s1, final String s2, final double minSimilarity) {
+        if (s1.equals(s2)) {
+            return 1.0;
+        }
+
+        final int bigLength = Math.max(s1.length(), s2.length());
+        final int distance = getLevenshteinDistance(s1, s2, getMaxDistance(bigLength, minSimilarity));
+        if (distance == -1) return -1;
+
+        final double similarity = (bigLength - distance) / (double) bigLength;
+        return similarity >= minSimilarity ? similarity : -1;
     }
 
     /**
@@ -401,6 +433,102 @@ public class StringUtilities {
         return (bigLength - getDamerauLevenshteinDistance(s2, s1)) / (double) bigLength;
     }
 
+    /**
+     * Checks to see how similar two strings are using the Damerau-Levenshtein distance algorithm, but only if they are at least as
+     * similar as a threshold.
+     *
+     * @param s1            The first string to compare against.
+     * @param s2            The second string to compare against.
+     * @param minSimilarity The minimum similarity, between 0 and 1.0.
+     * @return A value between minSimilarity and 1.0, where 1.0 is an exact match, or -1 if the strings are less similar than
+     *         minSimilarity.
+     * @see #similarLevenshtein(String, String, double)
+     */
+    public static double similarDamerauLevenshtein(final String s1, final String s2, final double minSimilarity) {
+        if (s1.equals(s2)) {
+            return 1.0;
+        }
+
+        final int bigLength = Math.max(s1.length(), s2.length());
+        final int distance = getDamerauLevenshteinDistance(s1, s2, getMaxDistance(bigLength, minSimilarity));
+        if (distance == -1) return -1;
+
+        final double similarity = (bigLength - distance) / (double) bigLength;
+        return similarity >= minSimilarity ? similarity : -1;
+    }
+
+    /**
+     * Get the largest distance that can still give a similarity of at least minSimilarity. One is added to allow for rounding, as
+     * the similarity is checked again once the distance is known.
+     */
+    private static int getMaxDistance(final int bigLength, final double minSimilarity) {
+        return (int) Math.min(bigLength, Math.floor((1.0 - minSimilarity) * bigLength) + 1);
+    }
+
+    /**
+     * Get the Levenshtein distance between two strings, if it is no more than a maximum distance. Only the cells of the distance
+     * matrix that are within the maximum distance of the diagonal are calculated (Ukkonen's cut-off), and the calculation stops as
+     * soon as every cell in a row is over the maximum distance.
+     *
+     * @param source      The source string.
+     * @param target      The string to transform the source into.
+     * @param maxDistance The maximum distance to calculate.
+     * @return The number of operations required to transform source into target, or -1 if it is more than maxDistance.
+     */
+    public static int getLevenshteinDistance(final String source, final String target, final int maxDistance) {
+        if (source == null || target == null) throw new IllegalArgumentException("Strings cannot be null");
+        if (maxDistance < 0) throw new IllegalArgumentException("maxDistance cannot be negative");
+
+        final int n = source.length();
+        final int m = target.length();
+        if (Math.abs(n - m) > maxDistance) return -1;
+        if (n == 0) return m;
+        if (m == 0) return n;
+
+        // The distance can never be more than the length of the longest string
+        final int k = Math.min(maxDistance, Math.max(n, m));
+        final int big = k + 1;
+
+        int[] previous = getEditDistanceBuffer(0, m + 1);
+        int[] current = getEditDistanceBuffer(1, m + 1);
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j <= k ? j : big;
+        }
+
+        for (int i = 1; i <= n; i++) {
+            final char sourceChar = source.charAt(i - 1);
+            final int min = Math.max(1, i - k);
+            final int max = Math.min(m, i + k);
+
+            // The cells just outside of the band are treated as being over the maximum distance
+            current[0] = i <= k ? i : big;
+            if (min > 1) current[min - 1] = big;
+
+            int left = current[min - 1];
+            int diagonal = previous[min - 1];
+            int rowMin = left;
+            for (int j = min; j <= max; j++) {
+                final int up = previous[j];
+                final int cost = sourceChar == target.charAt(j - 1) ? 0 : 1;
+                final int value = Math.min(Math.min(up, left) + 1, diagonal + cost);
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+                diagonal = up;
+                left = value;
+            }
+            if (max < m) current[max + 1] = big;
+
+            if (rowMin > k) return -1;
+
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        final int distance = previous[m];
+        return distance > k ? -1 : distance;
+    }
+
     /**
      * Get the minimum number of operations required to get from one string to another using the Damerau-Levenshtein distance algorithm
      * <p/>
@@ -421,44 +549,157 @@ public class StringUtilities {
             return source.length();
         }
 
-        int[][] score = new int[source.length() + 2][target.length() + 2];
+        return getDamerauLevenshteinDistance(source, target, Math.max(source.length(), target.length()));
+    }
 
-        int INF = source.length() + target.length();
-        score[0][0] = INF;
-        for (int i = 0; i <= source.length(); i++) {
-            score[i + 1][1] = i;
-            score[i + 1][0] = INF;
+    /**
+     * Get the Damerau-Levenshtein distance between two strings, if it is no more than a maximum distance. Like
+     * {@link #getLevenshteinDistance(String, String, int)} only the cells within the maximum distance of the diagonal are calculated,
+     * and only that band of the last three rows of the matrix is kept. A transposition that skips characters in both strings is never
+     * cheaper than substituting them instead, so older rows are only needed for transpositions that skip characters in the source
+     * alone, and the one cell each of those needs is saved when the matching character is found.
+     *
+     * @param source      The source string.
+     * @param target      The string to transform the source into.
+     * @param maxDistance The maximum distance to calculate.
+     * @return The number of operations required to transform source into target, or -1 if it is more than maxDistance.
+     */
+    public static int getDamerauLevenshteinDistance(final String source, final String target, final int maxDistance) {
+        if (source == null || target == null) throw new IllegalArgumentException("Strings cannot be null");
+        if (maxDistance < 0) throw new IllegalArgumentException("maxDistance cannot be negative");
+
+        final int n = source.length();
+        final int m = target.length();
+        if (Math.abs(n - m) > maxDistance) return -1;
+        if (n == 0) return m;
+        if (m == 0) return n;
+
+        final int k = Math.min(maxDistance, Math.max(n, m));
+        final int big = k + 1;
+
+        /*
+         * Give each character in the target an id, and record the id of each source character that is also in the target. The last
+         * row that each character was seen in is then kept in an array, instead of a map.
+         */
+        int tableSize = 16;
+        while (tableSize < m * 2) {
+            tableSize <<= 1;
         }
-        for (int j = 0; j <= target.length(); j++) {
-            score[1][j + 1] = j;
-            score[0][j + 1] = INF;
+        final int[] table = getEditDistanceBuffer(2, tableSize * 2);
+        Arrays.fill(table, 0, tableSize * 2, 0);
+        final int[] ids = getEditDistanceBuffer(3, m + n);
+        int alphabetSize = 0;
+        for (int j = 0; j < m; j++) {
+            final char c = target.charAt(j);
+            int slot = (c * 0x9E3779B1 >>> 16) & (tableSize - 1);
+            while (table[slot * 2] != 0 && table[slot * 2] != c + 1) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            if (table[slot * 2] == 0) {
+                table[slot * 2] = c + 1;
+                table[slot * 2 + 1] = alphabetSize++;
+            }
+            ids[j] = table[slot * 2 + 1];
         }
-
-        final SortedMap<Character, Integer> sd = new TreeMap<Character, Integer>();
-        for (final char letter : (source + target).toCharArray()) {
-            if (!sd.containsKey(letter)) sd.put(letter, 0);
+        for (int i = 0; i < n; i++) {
+            final char c = source.charAt(i);
+            int slot = (c * 0x9E3779B1 >>> 16) & (tableSize - 1);
+            while (table[slot * 2] != 0 && table[slot * 2] != c + 1) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            ids[m + i] = table[slot * 2] == 0 ? -1 : table[slot * 2 + 1];
+        }
+        final int[] lastRow = getEditDistanceBuffer(4, alphabetSize);
+        Arrays.fill(lastRow, 0, alphabetSize, 0);
+
+        /*
+         * Row i of the distance matrix is stored in row i % 3 of the ring buffer, and only holds the columns from i - k - 1 to
+         * i + k + 1, so column j of row i is at index j - i + k + 1. saved[j] holds the cell needed by a transposition that ends in
+         * column j, as of the row in savedRow[j].
+         */
+        final int width = 2 * k + 3;
+        final int[] score = getEditDistanceBuffer(5, 3 * width);
+        final int[] saved = getEditDistanceBuffer(6, m + 1);
+        final int[] savedRow = getEditDistanceBuffer(7, m + 1);
+        Arrays.fill(savedRow, 0, m + 1, 0);
+        for (int j = 0; j <= Math.min(m, k + 1); j++) {
+            score[j + k + 1] = Math.min(j, big);
         }
 
-        for (int i = 1; i <= source.length(); i++) {
-            int DB = 0;
-            for (int j = 1; j <= target.length(); j++) {
-                int i1 = sd.get(target.charAt(j - 1));
-                int j1 = DB;
-
-                if (source.charAt(i - 1) == target.charAt(j - 1)) {
-                    score[i + 1][j + 1] = score[i][j];
-                    DB = j;
+        for (int i = 1; i <= n; i++) {
+            final int row = (i % 3) * width + k + 1 - i;
+            final int previousRow = ((i - 1) % 3) * width + k + 2 - i;
+            final int min = Math.max(1, i - k);
+            final int max = Math.min(m, i + k);
+
+            // The cells just outside of the band are treated as being over the maximum distance
+            score[row + min - 1] = min == 1 ? Math.min(i, big) : big;
+            if (max < m) score[row + max + 1] = big;
+
+            int rowMin = score[row + min - 1];
+            final char sourceChar = source.charAt(i - 1);
+
+            // Find the last match before the band, as it can still be used by a transposition inside the band
+            int db = 0;
+            for (int j = min - 1; j >= Math.max(1, min - k - 1); j--) {
+                if (sourceChar == target.charAt(j - 1)) {
+                    db = j;
+                    break;
+                }
+            }
+            for (int j = min; j <= max; j++) {
+                final int i1 = lastRow[ids[j - 1]];
+                final int j1 = db;
+
+                int value;
+                if (sourceChar == target.charAt(j - 1)) {
+                    value = score[previousRow + j - 1];
+                    db = j;
+                    if (j > 1) {
+                        saved[j] = score[previousRow + j - 2];
+                        savedRow[j] = i;
+                    }
                 } else {
-                    score[i + 1][j + 1] = Math.min(score[i][j], Math.min(score[i + 1][j], score[i][j + 1])) + 1;
+                    value = Math.min(score[previousRow + j - 1], Math.min(score[row + j - 1], score[previousRow + j])) + 1;
+                }
+
+                // Transpositions are only possible if the matched cell is inside the band, as otherwise it is over the maximum distance
+                if (i1 != 0 && j1 != 0) {
+                    if (i1 == i - 1) {
+                        final int index = j1 - i + k + 2;
+                        if (index >= 0) {
+                            value = Math.min(value, score[((i - 2) % 3) * width + index] + (j - j1 - 1) + 1);
+                        }
+                    } else if (j1 == j - 1 && savedRow[j] == i1) {
+                        value = Math.min(value, saved[j] + (i - i1 - 1) + 1);
+                    }
                 }
 
-                score[i + 1][j + 1] = Math.min(score[i + 1][j + 1], score[i1][j1] + (i - i1 - 1) + 1 + (j - j1 - 1));
+                score[row + j] = value;
+                if (value < rowMin) rowMin = value;
             }
 
-            sd.put(source.charAt(i - 1), i);
+            if (rowMin > k) return -1;
+
+            if (ids[m + i - 1] != -1) lastRow[ids[m + i - 1]] = i;
+        }
+
+        final int distance = score[(n % 3) * width + m - n + k + 1];
+        return distance > k ? -1 : distance;
+    }
+
+    /**
+     * Get one of the edit distance buffers for the current thread, making sure it is at least a certain size.
+     */
+    private static int[] getEditDistanceBuffer(final int index, final int size) {
+        if (size > MAX_CACHED_BUFFER_SIZE) return new int[size];
+
+        final int[][] buffers = EDIT_DISTANCE_BUFFERS.get();
+        if (buffers[index].length < size) {
+            buffers[index] = new int[Math.max(size, Math.min(MAX_CACHED_BUFFER_SIZE, buffers[index].length * 2))];
         }
 
-        return score[source.length() + 1][target.length() + 1];
+        return buffers[index];
     }
 
     /**
@@ -0,0 +1,530 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.common;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.code.regexp.Matcher;
+import org.jboss.pressgang.ccms.utils.common.DocBookUtilities.XMLProperties;
+import org.jboss.pressgang.ccms.utils.structures.StringToNodeCollection;
+import org.jboss.pressgang.ccms.utils.structures.TranslatableStringLocation;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A SAX handler that extracts the translatable strings from a DocBook document using the same rules as
+ * {@link DocBookUtilities#getTranslatableStringsV3(Document, boolean)}, without building a DOM of the whole document. Each string
+ * is passed to a {@link TranslatableStringHandler} as soon as it is complete, and every occurrence of a string is reported.
+ * <p/>
+ * Only the current path of open elements and the child that is currently being added to a translatable string are held in
+ * memory, so the memory used is bounded by the nesting depth of the document and the size of the largest translatable string.
+ * The one exception is a non translatable element inside a translatable one (ie an itemizedlist in a para), which has to be held
+ * until either its first translatable descendant is found or it ends.
+ * <p/>
+ * The handler should also be registered as the {@link LexicalHandler} of the parser, so that comments, CDATA sections and
+ * entity references are kept in the strings.
+ */
+public class TranslatableStringExtractor extends DefaultHandler implements LexicalHandler {
+    /**
+     * A callback that is given each translatable string as it is extracted.
+     */
+    public interface TranslatableStringHandler {
+        void handleTranslatableString(TranslatableStringLocation translatableString);
+    }
+
+    private enum FrameType {
+        /**
+         * An element whose children are processed individually.
+         */
+        STRUCTURAL,
+        /**
+         * An element whose children are joined into translatable strings.
+         */
+        TRANSLATABLE,
+        /**
+         * A descendant of a translatable element that will be serialized as part of a translatable string.
+         */
+        INLINE,
+        /**
+         * A descendant of a translatable element that will be part of a translatable string, unless it contains a translatable
+         * element.
+         */
+        LOOKAHEAD
+    }
+
+    private static class Frame {
+        private final FrameType type;
+        private final String name;
+        private final XMLProperties props;
+        private final int index;
+        private String path;
+        private Element element;
+
+        private int childCount = 0;
+        private boolean lastChildWasText = false;
+        private Map<String, Integer> elementCounts;
+
+        private StringBuilder translatableString;
+        private boolean removeWhitespaceFromStart = true;
+        private int groupStart;
+        private int groupSize = 0;
+        private Node pending;
+        private int pendingIndex;
+
+        private Frame(final FrameType type, final String name, final XMLProperties props, final int index) {
+            this.type = type;
+            this.name = name;
+            this.props = props;
+            this.index = index;
+        }
+
+        private int nextChildIndex(final boolean text) {
+            if (text && lastChildWasText) return childCount - 1;
+
+            lastChildWasText = text;
+            return childCount++;
+        }
+
+        private String nextChildPath(final String childName) {
+            if (elementCounts == null) elementCounts = new HashMap<String, Integer>();
+            final Integer count = elementCounts.get(childName);
+            final int position = count == null ? 1 : count + 1;
+            elementCounts.put(childName, position);
+            return path + "/" + childName + "[" + position + "]";
+        }
+    }
+
+    private final TranslatableStringHandler handler;
+    private final LinkedList<Frame> frames = new LinkedList<Frame>();
+    private Document document;
+    private CharacterData cdata;
+    private int entityDepth = 0;
+    private boolean inDTD = false;
+
+    public TranslatableStringExtractor(final TranslatableStringHandler handler) {
+        if (handler == null) throw new IllegalArgumentException("handler cannot be null");
+        this.handler = handler;
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        frames.clear();
+        cdata = null;
+        entityDepth = 0;
+        inDTD = false;
+        try {
+            final DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+            builderFactory.setNamespaceAware(true);
+            document = builderFactory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        document = null;
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName,
+            final Attributes attributes) throws SAXException {
+        if (entityDepth > 0) return;
+
+        if (frames.isEmpty()) {
+            // The root element itself is never translated, only its children
+            final Frame root = new Frame(FrameType.STRUCTURAL, qName, new XMLProperties(), 0);
+            root.path = "/" + qName;
+            frames.push(root);
+            return;
+        }
+
+        Frame parent = frames.peek();
+        if (parent.type == FrameType.LOOKAHEAD && DocBookUtilities.TRANSLATABLE_ELEMENTS_SET.contains(qName)) {
+            // The buffered elements contain translatable content, so they have to be processed like any other structural element
+            processLookaheadFrames();
+            parent = frames.peek();
+        }
+
+        if (parent.type == FrameType.STRUCTURAL) {
+            final int index = parent.nextChildIndex(false);
+            frames.push(createFrame(qName, parent, index, parent.nextChildPath(qName)));
+        } else if (parent.type == FrameType.TRANSLATABLE) {
+            final int index = parent.nextChildIndex(false);
+            final String path = parent.nextChildPath(qName);
+            final boolean childTranslatableElement = DocBookUtilities.TRANSLATABLE_ELEMENTS_SET.contains(qName);
+            final boolean childInlineElement = DocBookUtilities.INLINE_ELEMENTS.contains(qName);
+
+            addPendingToTranslatableString(parent, false);
+            if (childTranslatableElement && !childInlineElement) {
+                addTranslatableString(parent, true);
+                frames.push(createFrame(qName, parent, index, path));
+            } else {
+                final Frame frame = new Frame(childInlineElement ? FrameType.INLINE : FrameType.LOOKAHEAD, qName,
+                        getProperties(qName, parent.props), index);
+                frame.path = path;
+                frame.element = createElement(qName, attributes);
+                frames.push(frame);
+            }
+        } else {
+            final Frame frame = new Frame(parent.type, qName, getProperties(qName, parent.props), -1);
+            frame.element = createElement(qName, attributes);
+            parent.element.appendChild(frame.element);
+            frames.push(frame);
+        }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        if (entityDepth > 0) return;
+
+        final Frame frame = frames.pop();
+        if (frame.type == FrameType.TRANSLATABLE) {
+            // An empty element only produces an empty string, which is ignored
+            if (frame.childCount != 0) {
+                addPendingToTranslatableString(frame, true);
+                addTranslatableString(frame, false);
+            }
+        } else if (frame.type != FrameType.STRUCTURAL && !frames.isEmpty()) {
+            final Frame parent = frames.peek();
+            if (parent.type == FrameType.TRANSLATABLE) {
+                parent.pending = frame.element;
+                parent.pendingIndex = frame.index;
+            }
+        }
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        if (entityDepth > 0 || frames.isEmpty()) return;
+
+        if (cdata != null) {
+            cdata.appendData(new String(ch, start, length));
+            return;
+        }
+
+        final Frame parent = frames.peek();
+        if (parent.type == FrameType.STRUCTURAL) {
+            parent.nextChildIndex(true);
+        } else if (parent.type == FrameType.TRANSLATABLE) {
+            if (parent.lastChildWasText && parent.pending != null) {
+                ((CharacterData) parent.pending).appendData(new String(ch, start, length));
+            } else {
+                addChild(parent, document.createTextNode(new String(ch, start, length)), true);
+            }
+        } else {
+            final Node lastChild = parent.element.getLastChild();
+            if (lastChild != null && lastChild.getNodeType() == Node.TEXT_NODE) {
+                ((CharacterData) lastChild).appendData(new String(ch, start, length));
+            } else {
+                parent.element.appendChild(document.createTextNode(new String(ch, start, length)));
+            }
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        if (entityDepth > 0 || frames.isEmpty()) return;
+
+        addChild(document.createProcessingInstruction(target, data));
+    }
+
+    @Override
+    public void skippedEntity(final String name) throws SAXException {
+        if (entityDepth > 0 || frames.isEmpty() || name.startsWith("%")) return;
+
+        addChild(document.createEntityReference(name));
+    }
+
+    @Override
+    public void startEntity(final String name) throws SAXException {
+        if (inDTD || name.startsWith("%") || name.startsWith("[")) return;
+
+        // Keep the entity as a reference, like XMLUtilities.convertStringToDocument() does, and ignore its replacement text
+        if (entityDepth == 0 && !frames.isEmpty()) {
+            addChild(document.createEntityReference(name));
+        }
+        entityDepth++;
+    }
+
+    @Override
+    public void endEntity(final String name) throws SAXException {
+        if (inDTD || name.startsWith("%") || name.startsWith("[")) return;
+
+        entityDepth--;
+    }
+
+    @Override
+    public void startCDATA() throws SAXException {
+        if (entityDepth > 0 || frames.isEmpty()) return;
+
+        cdata = document.createCDATASection("");
+        addChild(cdata);
+    }
+
+    @Override
+    public void endCDATA() throws SAXException {
+        cdata = null;
+    }
+
+    @Override
+    public void comment(final char[] ch, final int start, final int length) throws SAXException {
+        if (inDTD || entityDepth > 0 || frames.isEmpty()) return;
+
+        addChild(document.createComment(new String(ch, start, length)));
+    }
+
+    @Override
+    public void startDTD(final String name, final String publicId, final String systemId) throws SAXException {
+        inDTD = true;
+    }
+
+    @Override
+    public void endDTD() throws SAXException {
+        inDTD = false;
+    }
+
+    /**
+     * Adds a non element, non text node to the current element.
+     */
+    private void addChild(final Node node) {
+        final Frame parent = frames.peek();
+        if (parent.type == FrameType.STRUCTURAL) {
+            parent.nextChildIndex(false);
+        } else if (parent.type == FrameType.TRANSLATABLE) {
+            addChild(parent, node, false);
+        } else {
+            parent.element.appendChild(node);
+        }
+    }
+
+    private void addChild(final Frame parent, final Node node, final boolean text) {
+        final int index = parent.nextChildIndex(text);
+        addPendingToTranslatableString(parent, false);
+        parent.pending = node;
+        parent.pendingIndex = index;
+    }
+
+    private Frame createFrame(final String name, final Frame parent, final int index, final String path) {
+        final XMLProperties props = getProperties(name, parent.props);
+
+        /*
+         * this element has translatable strings if:
+         *
+         * 1. a translatableElement
+         *
+         * OR
+         *
+         * 2. a standaloneElement without a translatableParentElement
+         *
+         * 3. not a standaloneElement and not an inlineElement
+         */
+        final boolean translatableElement = DocBookUtilities.TRANSLATABLE_ELEMENTS_SET.contains(name);
+        final boolean standaloneElement = DocBookUtilities.TRANSLATABLE_IF_STANDALONE_ELEMENTS.contains(name);
+        final boolean translatableParentElement = DocBookUtilities.TRANSLATABLE_ELEMENTS_SET.contains(parent.name);
+        final boolean translatable = translatableElement && ((standaloneElement && !translatableParentElement) || (!standaloneElement
+                && !props.isInline()));
+
+        final Frame frame = new Frame(translatable ? FrameType.TRANSLATABLE : FrameType.STRUCTURAL, name, props, index);
+        frame.path = path;
+        if (translatable) {
+            frame.translatableString = new StringBuilder();
+        }
+
+        return frame;
+    }
+
+    private static XMLProperties getProperties(final String name, final XMLProperties parentProps) {
+        final XMLProperties props = new XMLProperties(parentProps);
+        if (!props.isInline() && DocBookUtilities.INLINE_ELEMENTS.contains(name)) props.setInline(true);
+        if (!props.isVerbatim() && DocBookUtilities.VERBATIM_ELEMENTS.contains(name)) props.setVerbatim(true);
+        return props;
+    }
+
+    private Element createElement(final String name, final Attributes attributes) {
+        final Element element = document.createElement(name);
+        for (int i = 0; i < attributes.getLength(); i++) {
+            element.setAttribute(attributes.getQName(i), attributes.getValue(i));
+        }
+
+        return element;
+    }
+
+    /**
+     * Adds the last child of a translatable element to the string that is being built up, now that it's known if it is the last
+     * child or not.
+     */
+    private void addPendingToTranslatableString(final Frame frame, final boolean isLast) {
+        final Node child = frame.pending;
+        if (child == null) return;
+
+        final int i = frame.pendingIndex;
+        final String childText = XMLUtilities.convertNodeToString(child, true, true, false);
+
+        final boolean isVerbatimNode = frame.props.isVerbatim() || DocBookUtilities.VERBATIM_ELEMENTS.contains(child.getNodeName());
+        final String thisTranslatableString;
+        if (isVerbatimNode) {
+            thisTranslatableString = childText;
+        } else {
+            thisTranslatableString = DocBookUtilities.cleanTranslationText(childText, frame.removeWhitespaceFromStart, isLast);
+        }
+
+        if (isVerbatimNode || !thisTranslatableString.isEmpty()) {
+            if (!isVerbatimNode && thisTranslatableString.matches("^\\s+$")) {
+                // Pure whitespace nodes should be collapsed down to a single space, unless it is the start or end
+                if (!(i == 0 || isLast)) {
+                    frame.translatableString.append(" ");
+                    frame.removeWhitespaceFromStart = false;
+                }
+            } else {
+                frame.translatableString.append(thisTranslatableString);
+                frame.removeWhitespaceFromStart = false;
+            }
+        }
+
+        if (frame.groupSize == 0) frame.groupStart = i;
+        frame.groupSize++;
+        frame.pending = null;
+    }
+
+    /**
+     * Passes the string that has been built up from the children of a translatable element to the handler.
+     *
+     * @param frame                  The translatable element.
+     * @param removeTrailingWhitespace If the string is being ended by a child that contains translatable content, in which
+     *                                 case any trailing whitespace is insignificant.
+     */
+    private void addTranslatableString(final Frame frame, final boolean removeTrailingWhitespace) {
+        if (frame.groupSize == 0) return;
+
+        String translatableString = frame.translatableString.toString();
+        if (removeTrailingWhitespace) {
+            final Matcher matcher = DocBookUtilities.TRAILING_WHITESPACE_RE_PATTERN.matcher(translatableString);
+            if (matcher.matches()) translatableString = matcher.group("content");
+        }
+
+        if (!translatableString.isEmpty()) {
+            handler.handleTranslatableString(new TranslatableStringLocation(translatableString, frame.path, frame.groupStart,
+                    frame.groupSize));
+        }
+
+        frame.translatableString.setLength(0);
+        frame.groupSize = 0;
+        frame.removeWhitespaceFromStart = true;
+    }
+
+    /**
+     * Converts the buffered elements on top of the stack into structural elements, as a translatable element has been found inside
+     * them. Any children that have already been buffered are processed using the DOM based extraction.
+     */
+    private void processLookaheadFrames() {
+        final List<Frame> lookaheadFrames = new ArrayList<Frame>();
+        for (final Frame frame : frames) {
+            if (frame.type != FrameType.LOOKAHEAD) break;
+            lookaheadFrames.add(0, frame);
+        }
+
+        // The string being built up ends before the buffered element
+        final Frame translatableFrame = frames.get(lookaheadFrames.size());
+        addTranslatableString(translatableFrame, true);
+
+        final Map<Node, Boolean> translatableContentCache = new IdentityHashMap<Node, Boolean>();
+        for (int i = 0; i < lookaheadFrames.size(); i++) {
+            final Frame lookaheadFrame = lookaheadFrames.get(i);
+            final Frame structuralFrame = new Frame(FrameType.STRUCTURAL, lookaheadFrame.name, lookaheadFrame.props,
+                    lookaheadFrame.index);
+            if (i == 0) {
+                structuralFrame.path = lookaheadFrame.path;
+            } else {
+                structuralFrame.path = lookaheadFrames.get(i - 1).path + "/" + getStep(lookaheadFrame.element);
+                lookaheadFrame.path = structuralFrame.path;
+            }
+
+            // The open child (if any) is the last child, and will continue to be processed as the document is read
+            final Node openChild = i == lookaheadFrames.size() - 1 ? null : lookaheadFrames.get(i + 1).element;
+            for (Node child = lookaheadFrame.element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    structuralFrame.nextChildPath(child.getNodeName());
+                }
+                structuralFrame.nextChildIndex(child.getNodeType() == Node.TEXT_NODE);
+
+                if (child != openChild) {
+                    final List<StringToNodeCollection> translationStrings = new ArrayList<StringToNodeCollection>();
+                    DocBookUtilities.getTranslatableStringsFromNodeV3(child, translationStrings, true, lookaheadFrame.props,
+                            translatableContentCache);
+                    for (final StringToNodeCollection translationString : translationStrings) {
+                        final List<Node> nodes = translationString.getNodeCollections().get(0);
+                        final Node first = nodes.get(0);
+                        handler.handleTranslatableString(new TranslatableStringLocation(translationString.getTranslationString(),
+                                getPath(first.getParentNode(), lookaheadFrame), getIndex(first), nodes.size()));
+                    }
+                }
+            }
+
+            frames.set(lookaheadFrames.size() - 1 - i, structuralFrame);
+        }
+    }
+
+    private static String getPath(final Node node, final Frame frame) {
+        final StringBuilder path = new StringBuilder();
+        for (Node parent = node; parent != frame.element; parent = parent.getParentNode()) {
+            path.insert(0, "/" + getStep(parent));
+        }
+
+        return path.insert(0, frame.path).toString();
+    }
+
+    private static String getStep(final Node element) {
+        final String name = element.getNodeName();
+        int position = 1;
+        for (Node sibling = element.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+            if (name.equals(sibling.getNodeName())) position++;
+        }
+
+        return name + "[" + position + "]";
+    }
+
+    private static int getIndex(final Node node) {
+        int index = 0;
+        for (Node sibling = node.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+            index++;
+        }
+
+        return index;
+    }
+}
@@ -35,10 +35,12 @@ import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.net.URLEncoder;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -46,6 +48,7 @@ import java.util.Random;
 
 import com.google.code.regexp.Matcher;
 import com.google.code.regexp.Pattern;
+import org.apache.commons.codec.binary.Hex;
 import org.jboss.pressgang.ccms.utils.sort.EntitySubstitutionBoundaryDataBoundaryStartSort;
 import org.jboss.pressgang.ccms.utils.structures.EntitySubstitutionBoundaryData;
 import org.jboss.pressgang.ccms.utils.structures.InjectionError;
@@ -1072,6 +1075,298 @@ public class XMLUtilities {
         return nodes;
     }
 
+    /**
+     * Get the path to a node from its document, as the index of each node in its parent's child nodes. The path can be used to find
+     * the same node in a copy of the document.
+     *
+     * @param node The node to get the path for.
+     * @return The path to the node, or null if the node isn't attached to a document.
+     */
+    public static int[] getNodePath(final Node node) {
+        if (node == null) return null;
+
+        return getNodePath(node.getNodeType() == Node.DOCUMENT_NODE ? node : node.getOwnerDocument(), node);
+    }
+
+    /**
+     * Get the path to a node from one of its ancestors, as the index of each node in its parent's child nodes.
+     *
+     * @param ancestor The node that the path starts from.
+     * @param node     The node to get the path for.
+     * @return The path to the node, or null if the node isn't a descendant of the ancestor.
+     */
+    public static int[] getNodePath(final Node ancestor, final Node node) {
+        if (ancestor == null || node == null) return null;
+
+        int depth = 0;
+        for (Node parent = node; parent != ancestor; parent = parent.getParentNode()) {
+            if (parent.getParentNode() == null) return null;
+            depth++;
+        }
+
+        final int[] path = new int[depth];
+        Node current = node;
+        for (int i = depth - 1; i >= 0; i--) {
+            int index = 0;
+            for (Node sibling = current.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+                index++;
+            }
+            path[i] = index;
+            current = current.getParentNode();
+        }
+
+        return path;
+    }
+
+    /**
+     * Find a node from a path created by {@link #getNodePath(Node)} or {@link #getNodePath(Node, Node)}.
+     *
+     * @param root The document or node that the path starts from.
+     * @param path The path to the node.
+     * @return The node at the path, or null if there isn't a node at that path.
+     */
+    public static Node getNodeByPath(final Node root, final int[] path) {
+        if (root == null || path == null) return null;
+
+        Node current = root;
+        for (final int index : path) {
+            final NodeList children = current.getChildNodes();
+            if (index < 0 || index >= children.getLength()) return null;
+            current = children.item(index);
+        }
+
+        return current;
+    }
+
+    /**
+     * Get a SHA-256 hash of the structure and content of a document. Two documents with the same hash will have the same nodes at
+     * the same paths, so a path from {@link #getNodePath(Node)} can be used with either document.
+     *
+     * @param doc The document to hash.
+     * @return The hex encoded hash of the document.
+     */
+    public static String getDocumentHash(final Document doc) {
+        if (doc == null) return null;
+
+        try {
+            final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            for (Node child = doc.getFirstChild(); child != null; child = child.getNextSibling()) {
+                updateDocumentHash(messageDigest, child);
+            }
+            return new String(Hex.encodeHex(messageDigest.digest()));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void updateDocumentHash(final MessageDigest messageDigest, final Node node) throws UnsupportedEncodingException {
+        messageDigest.update((byte) node.getNodeType());
+        messageDigest.update(node.getNodeName().getBytes("UTF-8"));
+        messageDigest.update((byte) 0);
+        if (node.getNodeValue() != null) {
+            messageDigest.update(node.getNodeValue().getBytes("UTF-8"));
+        }
+        messageDigest.update((byte) 0);
+
+        final NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null && node.getNodeType() == Node.ELEMENT_NODE) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final Node attribute = attributes.item(i);
+                messageDigest.update(attribute.getNodeName().getBytes("UTF-8"));
+                messageDigest.update((byte) '=');
+                messageDigest.update(attribute.getNodeValue().getBytes("UTF-8"));
+                messageDigest.update((byte) 0);
+            }
+        }
+
+        // Mark the start and end of the children, so that the same nodes at different depths produce a different hash
+        messageDigest.update((byte) '{');
+        if (node.getNodeType() != Node.ENTITY_REFERENCE_NODE) {
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                updateDocumentHash(messageDigest, child);
+            }
+        }
+        messageDigest.update((byte) '}');
+    }
+
+    /**
+     * Get a SHA-256 hash of the structure and content of a node and each of its descendants. The hashes are calculated bottom up, so
+     * every node is only visited once, and two subtrees with the same hash will have the same nodes at the same relative paths.
+     *
+     * @param node The node to hash.
+     * @return The hex encoded hashes for the node and every descendant that is an element or has children.
+     */
+    public static Map<Node, String> getSubtreeHashes(final Node node) {
+        final Map<Node, String> subtreeHashes = new IdentityHashMap<Node, String>();
+        if (node == null) return subtreeHashes;
+
+        try {
+            new SubtreeHasher(MessageDigest.getInstance("SHA-256"), subtreeHashes).hash(node);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return subtreeHashes;
+    }
+
+    /**
+     * Calculates the hashes for {@link #getSubtreeHashes(Node)}. A single digest and buffer are reused for every node, as the
+     * hashing is done over the entire document.
+     */
+    private static class SubtreeHasher {
+        private final MessageDigest messageDigest;
+        private final Map<Node, String> subtreeHashes;
+        private byte[] buffer = new byte[256];
+
+        private SubtreeHasher(final MessageDigest messageDigest, final Map<Node, String> subtreeHashes) {
+            this.messageDigest = messageDigest;
+            this.subtreeHashes = subtreeHashes;
+        }
+
+        private byte[] hash(final Node node) {
+            final NodeList children = node.getChildNodes();
+            final byte[][] childHashes = new byte[children.getLength()][];
+            for (int i = 0; i < childHashes.length; i++) {
+                childHashes[i] = hash(children.item(i));
+            }
+
+            // The children have all been hashed, so the digest can be reused for this node
+            messageDigest.reset();
+            messageDigest.update((byte) node.getNodeType());
+            update(node.getNodeName());
+            update(node.getNodeValue());
+
+            final NamedNodeMap attributes = node.getAttributes();
+            if (attributes != null && node.getNodeType() == Node.ELEMENT_NODE) {
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    final Node attribute = attributes.item(i);
+                    update(attribute.getNodeName());
+                    update(attribute.getNodeValue());
+                }
+            }
+
+            messageDigest.update((byte) '{');
+            for (final byte[] childHash : childHashes) {
+                messageDigest.update(childHash);
+            }
+            messageDigest.update((byte) '}');
+
+            final byte[] hash = messageDigest.digest();
+            if (node.getNodeType() == Node.ELEMENT_NODE || childHashes.length != 0) {
+                subtreeHashes.put(node, new String(Hex.encodeHex(hash)));
+            }
+
+            return hash;
+        }
+
+        /**
+         * Add a length prefixed string to the digest, without having to encode the string.
+         */
+        private void update(final String value) {
+            final int length = value == null ? -1 : value.length();
+            final int size = 4 + Math.max(length, 0) * 2;
+            if (buffer.length < size) {
+                buffer = new byte[Math.max(size, buffer.length * 2)];
+            }
+
+            buffer[0] = (byte) (length >>> 24);
+            buffer[1] = (byte) (length >>> 16);
+            buffer[2] = (byte) (length >>> 8);
+            buffer[3] = (byte) length;
+            for (int i = 0, j = 4; i < length; i++) {
+                final char c = value.charAt(i);
+                buffer[j++] = (byte) (c >>> 8);
+                buffer[j++] = (byte) c;
+            }
+            messageDigest.update(buffer, 0, size);
+        }
+    }
+
+    /**
+     * Structurally compares two documents and finds the smallest elements in the current document that enclose all the changes made
+     * from the previous document. An element is considered changed if its attributes, its direct text content or the sequence of its
+     * child nodes have changed. Where only a child element has changed, the search continues into the child instead.
+     *
+     * @param previous The previous version of the document.
+     * @param current  The current version of the document.
+     * @return The list of changed elements from the current document, in document order. If the document elements differ then the
+     *         list will only contain the current document element.
+     */
+    public static List<Element> findChangedElements(final Document previous, final Document current) {
+        final List<Element> changedElements = new ArrayList<Element>();
+        if (previous == null || current == null || previous.getDocumentElement() == null || current.getDocumentElement() == null) {
+            if (current != null && current.getDocumentElement() != null) {
+                changedElements.add(current.getDocumentElement());
+            }
+        } else {
+            findChangedElements(previous.getDocumentElement(), current.getDocumentElement(), changedElements);
+        }
+
+        return changedElements;
+    }
+
+    private static void findChangedElements(final Element previous, final Element current, final List<Element> changedElements) {
+        if (previous.isEqualNode(current)) return;
+
+        if (!isSameElementStructure(previous, current)) {
+            changedElements.add(current);
+            return;
+        }
+
+        // If any direct non element content has changed, then the element itself has changed
+        final NodeList previousChildren = previous.getChildNodes();
+        final NodeList currentChildren = current.getChildNodes();
+        for (int i = 0; i < currentChildren.getLength(); i++) {
+            final Node currentChild = currentChildren.item(i);
+            if (currentChild.getNodeType() != Node.ELEMENT_NODE && !currentChild.isEqualNode(previousChildren.item(i))) {
+                changedElements.add(current);
+                return;
+            }
+        }
+
+        // Otherwise only child elements have changed, so check them individually
+        for (int i = 0; i < currentChildren.getLength(); i++) {
+            final Node currentChild = currentChildren.item(i);
+            if (currentChild.getNodeType() == Node.ELEMENT_NODE) {
+                findChangedElements((Element) previousChildren.item(i), (Element) currentChild, changedElements);
+            }
+        }
+    }
+
+    /**
+     * Checks if two elements have the same name, attributes and sequence of child nodes. The content of the child nodes isn't checked.
+     */
+    private static boolean isSameElementStructure(final Element previous, final Element current) {
+        if (!previous.getNodeName().equals(current.getNodeName())) return false;
+        if (previous.getNamespaceURI() == null ? current.getNamespaceURI() != null : !previous.getNamespaceURI().equals(
+                current.getNamespaceURI())) return false;
+
+        // Check the attributes
+        final NamedNodeMap previousAttrs = previous.getAttributes();
+        final NamedNodeMap currentAttrs = current.getAttributes();
+        if (previousAttrs.getLength() != currentAttrs.getLength()) return false;
+        for (int i = 0; i < currentAttrs.getLength(); i++) {
+            final Node currentAttr = currentAttrs.item(i);
+            final Node previousAttr = previousAttrs.getNamedItem(currentAttr.getNodeName());
+            if (previousAttr == null || !previousAttr.getNodeValue().equals(currentAttr.getNodeValue())) return false;
+        }
+
+        // Check the child node sequence
+        final NodeList previousChildren = previous.getChildNodes();
+        final NodeList currentChildren = current.getChildNodes();
+        if (previousChildren.getLength() != currentChildren.getLength()) return false;
+        for (int i = 0; i < currentChildren.getLength(); i++) {
+            final Node previousChild = previousChildren.item(i);
+            final Node currentChild = currentChildren.item(i);
+            if (previousChild.getNodeType() != currentChild.getNodeType()) return false;
+            if (currentChild.getNodeType() == Node.ELEMENT_NODE && !previousChild.getNodeName().equals(currentChild.getNodeName())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Add/Set the DOCTYPE for some XML content.
      *
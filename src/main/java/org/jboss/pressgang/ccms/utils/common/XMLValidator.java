@@ -27,17 +27,43 @@ import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import com.google.code.regexp.Matcher;
 import com.google.code.regexp.Pattern;
 import com.thaiopensource.relaxng.jaxp.XMLSyntaxSchemaFactory;
+import org.jboss.pressgang.ccms.utils.structures.ResourcePack;
+import org.jboss.pressgang.ccms.utils.structures.ValidationError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 import org.w3c.dom.bootstrap.DOMImplementationRegistry;
 import org.w3c.dom.ls.DOMImplementationLS;
 import org.w3c.dom.ls.LSInput;
@@ -61,13 +87,63 @@ public class XMLValidator {
             "^(\\s*(?<Preamble><\\?xml.*?\\?>))?\\s*<\\!DOCTYPE\\s+(?<Name>.*?)(\\s+((PUBLIC\\s+\".*?\"|SYSTEM)[ ]+\"(?<SystemId>.*?)\")"
                     + "\\s*)?((?<Entities>\\[(.|\n)*\\]\\s*))?>");
 
+    /**
+     * The DocBook 5.0 elements that can be validated on their own, without needing the context of their ancestors.
+     */
+    public static final List<String> DOCBOOK_50_CONTEXT_FREE_ELEMENTS = Arrays.asList("appendix", "article", "caution", "chapter",
+            "example", "figure", "formalpara", "glosslist", "important", "informalexample", "informalfigure", "informaltable",
+            "itemizedlist", "note", "orderedlist", "para", "preface", "procedure", "programlisting", "screen", "section", "sidebar",
+            "simpara", "simplesect", "table", "tip", "variablelist", "warning");
+    /**
+     * The attributes that declare or reference IDs. ID uniqueness and references can only be checked against the full document, so
+     * any change to these attributes can't be validated locally.
+     */
+    private static final List<String> ID_ATTRIBUTE_NAMES = Arrays.asList("id", "xml:id", "linkend", "linkends", "endterm",
+            "otherterm", "arearefs", "startref", "zone");
+    private static final int MAX_CACHED_VERDICTS = 10000;
+    private static final Map<String, Boolean> VERDICT_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_CACHED_VERDICTS;
+                }
+            });
+
+    private static final int MAX_CACHED_SCHEMAS = 50;
+    private static final Map<String, FutureTask<Schema>> SCHEMA_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, FutureTask<Schema>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, FutureTask<Schema>> eldest) {
+                    return size() > MAX_CACHED_SCHEMAS;
+                }
+            });
+
+    private static final int HEADER_CHUNK_SIZE = 8 * 1024;
+    private static final int MAX_HEADER_SIZE = 1024 * 1024;
+
     protected boolean errorsDetected;
     private String errorText;
-    private Map<String, byte[]> files = new HashMap<String, byte[]>();
     private final boolean logErrors;
+    private final int maxErrors;
+    private final List<ValidationError> errors = new ArrayList<ValidationError>();
+    private SAXParseException lastRecordedError;
+    private int lineOffset = 0;
+    private List<String> contextFreeElements = DOCBOOK_50_CONTEXT_FREE_ELEMENTS;
 
     public XMLValidator(final boolean logErrors) {
+        this(logErrors, 1);
+    }
+
+    /**
+     * Creates a validator that can collect multiple errors in a single validation pass.
+     *
+     * @param logErrors If errors should be logged as they are found.
+     * @param maxErrors The maximum number of errors to collect before the validation is aborted. A value of 1 will abort on the first
+     *                  error and a value less than 1 will collect every error in the document.
+     */
+    public XMLValidator(final boolean logErrors, final int maxErrors) {
         this.logErrors = logErrors;
+        this.maxErrors = maxErrors;
 
         // Configure the RelaxNG schema factory
         System.setProperty(SchemaFactory.class.getName() + ":" + XMLConstants.RELAXNG_NS_URI, XMLSyntaxSchemaFactory.class.getName());
@@ -147,6 +223,191 @@ public class XMLValidator {
         }
     }
 
+    /**
+     * Validates some piece of XML, by firstly converting it to a string to ensure that it is valid.
+     *
+     * @param method    The validation method to use during validation.
+     * @param doc       The XML DOM Document to be validated.
+     * @param fileName  The filename of the DTD/Schema data in the resource pack.
+     * @param entities  The entity data to be used to validate against.
+     * @param resources The resource pack that holds the DTD/Schema and any additional files needed during the validation.
+     * @return True if the XML is valid, otherwise false.
+     */
+    public boolean validate(final ValidationMethod method, final Document doc, final String fileName, final String entities,
+            final ResourcePack resources) {
+        if (doc == null || doc.getDocumentElement() == null) {
+            return false;
+        } else {
+            return validate(method, convertDocumentToString(doc), fileName, entities, doc.getDocumentElement().getNodeName(), resources);
+        }
+    }
+
+    /**
+     * Validates a document by only re-validating the parts that have changed since a previous version of the document. The previous
+     * version must have been validated by this method before, so that its verdict is known. The smallest elements that enclose the
+     * changes are found, and each is then validated on its own if it (or an ancestor) is one of the context free elements. When
+     * the locality of the changes can't be proven (such as when an ID or ID reference has changed), the previous verdict isn't known,
+     * the previous version was invalid or a changed element fails validation on its own, then the full document is validated
+     * instead.
+     * <p/>
+     * Note: This is only supported for Schema based validation. DTD validation will always validate the full document.
+     *
+     * @param method      The validation method to use during validation.
+     * @param previousDoc The previous version of the document, or null if there isn't one.
+     * @param doc         The XML DOM Document to be validated.
+     * @param fileName    The filename of the Schema data in the resource pack.
+     * @param entities    The entity data to be used to validate against.
+     * @param resources   The resource pack that holds the Schema and any additional files needed during the validation.
+     * @return True if the XML is valid, otherwise false.
+     */
+    public boolean validateIncrementally(final ValidationMethod method, final Document previousDoc, final Document doc,
+            final String fileName, final String entities, final ResourcePack resources) {
+        if (doc == null || doc.getDocumentElement() == null || resources == null) return false;
+
+        final String xml = convertDocumentToString(doc);
+        final String verdictKey = buildVerdictKey(method, fileName, entities, resources, xml);
+
+        // Check to see if the current document has already been validated
+        final Boolean cachedVerdict = VERDICT_CACHE.get(verdictKey);
+        if (cachedVerdict != null && cachedVerdict) {
+            errors.clear();
+            return true;
+        }
+
+        // Find the regions of the document that need to be validated
+        final List<Element> regions = method == ValidationMethod.DTD ? null : findRevalidationRegions(method, previousDoc, doc,
+                fileName, entities, resources);
+
+        boolean regionsValid = regions != null;
+        if (regions != null) {
+            for (final Element region : regions) {
+                if (!validateRegion(method, region, fileName, entities, resources)) {
+                    regionsValid = false;
+                    break;
+                }
+            }
+        }
+
+        // A region can fail on its own because of content outside of it (eg a reference to an ID), so only trust regions that pass
+        final boolean valid;
+        if (regionsValid) {
+            errors.clear();
+            valid = true;
+        } else {
+            valid = validate(method, xml, fileName, entities, doc.getDocumentElement().getNodeName(), resources);
+        }
+
+        VERDICT_CACHE.put(verdictKey, valid);
+        return valid;
+    }
+
+    /**
+     * Finds the elements that need to be re-validated, if the changes can be isolated to context free elements.
+     *
+     * @return The list of elements to be validated, or null if the full document needs to be validated.
+     */
+    private List<Element> findRevalidationRegions(final ValidationMethod method, final Document previousDoc, final Document doc,
+            final String fileName, final String entities, final ResourcePack resources) {
+        if (previousDoc == null || previousDoc.getDocumentElement() == null) return null;
+
+        // Only the changes need to be checked if the previous document was valid
+        final Boolean previousVerdict = VERDICT_CACHE.get(buildVerdictKey(method, fileName, entities, resources,
+                convertDocumentToString(previousDoc)));
+        if (previousVerdict == null || !previousVerdict) return null;
+
+        // IDs and references to them are checked across the whole document, so changes to them aren't local
+        if (!getIdAttributes(previousDoc.getDocumentElement()).equals(getIdAttributes(doc.getDocumentElement()))) return null;
+
+        final List<Element> regions = new ArrayList<Element>();
+        for (final Element changedElement : XMLUtilities.findChangedElements(previousDoc, doc)) {
+            // Find the closest element that can be validated on its own
+            Node region = changedElement;
+            while (region != null && region.getNodeType() == Node.ELEMENT_NODE && !contextFreeElements.contains(
+                    region.getLocalName() == null ? region.getNodeName() : region.getLocalName())) {
+                region = region.getParentNode();
+            }
+
+            // Validating the document element is the same as a full validation
+            if (region == null || region.getNodeType() != Node.ELEMENT_NODE || region == doc.getDocumentElement()) return null;
+
+            // Changes are returned in document order, so only the last region can contain this region
+            if (regions.isEmpty() || !isAncestorOrSelf(regions.get(regions.size() - 1), region)) {
+                regions.add((Element) region);
+            }
+        }
+
+        return regions;
+    }
+
+    private boolean validateRegion(final ValidationMethod method, final Element region, final String fileName, final String entities,
+            final ResourcePack resources) {
+        final Document regionDoc = region.getOwnerDocument().getImplementation().createDocument(null, null, null);
+        regionDoc.appendChild(regionDoc.importNode(region, true));
+
+        final String regionXml = convertDocumentToString(regionDoc);
+        final String verdictKey = buildVerdictKey(method, fileName, entities, resources, regionXml);
+        final Boolean cachedVerdict = VERDICT_CACHE.get(verdictKey);
+        if (cachedVerdict != null && cachedVerdict) return true;
+
+        final boolean valid = validate(method, regionXml, fileName, entities, region.getNodeName(), resources);
+        VERDICT_CACHE.put(verdictKey, valid);
+        return valid;
+    }
+
+    private static boolean isAncestorOrSelf(final Node ancestor, final Node node) {
+        Node parent = node;
+        while (parent != null) {
+            if (parent == ancestor) return true;
+            parent = parent.getParentNode();
+        }
+        return false;
+    }
+
+    /**
+     * Gets the ID and ID reference attributes in a subtree, in document order.
+     */
+    private static List<String> getIdAttributes(final Element root) {
+        final List<String> idAttributes = new ArrayList<String>();
+        Node node = root;
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                final NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    final Node attribute = attributes.item(i);
+                    if (ID_ATTRIBUTE_NAMES.contains(attribute.getNodeName())) {
+                        idAttributes.add(attribute.getNodeName() + "=" + attribute.getNodeValue());
+                    }
+                }
+            }
+
+            // Move to the next node in document order
+            if (node.getFirstChild() != null) {
+                node = node.getFirstChild();
+            } else {
+                while (node != null && node != root && node.getNextSibling() == null) {
+                    node = node.getParentNode();
+                }
+                node = node == null || node == root ? null : node.getNextSibling();
+            }
+        }
+
+        return idAttributes;
+    }
+
+    private static String buildVerdictKey(final ValidationMethod method, final String fileName, final String entities,
+            final ResourcePack resources, final String xml) {
+        return HashUtilities.generateSHA256(method.name() + "\u0000" + fileName + "\u0000" + resources.getContentHash() + "\u0000" + (
+                entities == null ? "" : entities) + "\u0000" + xml);
+    }
+
+    private static String convertDocumentToString(final Document doc) {
+        if (doc.getXmlEncoding() == null) {
+            return XMLUtilities.convertDocumentToString(doc, "UTF-8");
+        } else {
+            return XMLUtilities.convertDocumentToString(doc);
+        }
+    }
+
     /**
      * Validates some piece of XML to ensure that it is valid.
      *
@@ -210,36 +471,171 @@ public class XMLValidator {
             final String entities, final String rootEleName, final Map<String, byte[]> additionalFiles) {
         if (xml == null || fileName == null || data == null || rootEleName == null) return false;
 
-        files = new HashMap<String, byte[]>();
-        files.put(fileName, data);
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
         if (additionalFiles != null) {
             files.putAll(additionalFiles);
         }
+        files.put(fileName, data);
+
+        return validate(method, xml, fileName, entities, rootEleName, ResourcePack.fromMap(files));
+    }
+
+    /**
+     * Validates some piece of XML to ensure that it is valid, using a resource pack to resolve the DTD/Schema data and any other files
+     * needed during validation.
+     *
+     * @param method      The validation method to use during validation.
+     * @param xml         The XML to be validated.
+     * @param fileName    The filename of the DTD/Schema data in the resource pack.
+     * @param entities    The entity data to be used to validate against.
+     * @param rootEleName The name of the root XML Element.
+     * @param resources   The resource pack that holds the DTD/Schema and any additional files needed during the validation.
+     * @return True if the XML is valid, otherwise false.
+     */
+    public boolean validate(final ValidationMethod method, final String xml, final String fileName, final String entities,
+            final String rootEleName, final ResourcePack resources) {
+        if (xml == null || fileName == null || resources == null || !resources.contains(fileName) || rootEleName == null) return false;
+
+        errors.clear();
+        lastRecordedError = null;
 
         String encoding = XMLUtilities.findEncoding(xml);
         if (encoding == null) encoding = "UTF-8";
 
         try {
-            final Resolver resolver = new Resolver(files);
+            final Resolver resolver = new Resolver(resources);
             if (method == ValidationMethod.DTD) {
-                final byte[] xmlData = setXmlPreambleAndDTD(xml, fileName, entities, rootEleName).getBytes(encoding);
-                validateDTD(resolver, xmlData);
+                final String fixedXml = setXmlPreambleAndDTD(xml, fileName, entities, rootEleName);
+                lineOffset = calculateLineOffset(xml, fixedXml);
+                validateDTD(resolver, fixedXml.getBytes(encoding));
             } else {
-                final byte[] xmlData = setXmlPreambleAndDTD(xml, null, entities, rootEleName).getBytes(encoding);
-                validateSchema(method, resolver, data, xmlData);
+                final String fixedXml = setXmlPreambleAndDTD(xml, null, entities, rootEleName);
+                lineOffset = calculateLineOffset(xml, fixedXml);
+                validateSchema(method, resolver, getSchema(method, fileName, resources), new ByteArrayInputStream(fixedXml.getBytes(encoding)));
             }
         } catch (SAXParseException e) {
-            handleError(e);
+            // Errors that have already been collected will have been handled when they were collected
+            if (e != lastRecordedError) {
+                recordError(e);
+            }
             return false;
         } catch (Exception e) {
             LOG.error("An error occurred validating the XML", e);
             return false;
         }
-        return true;
+        return errors.isEmpty();
+    }
+
+    /**
+     * Validates some XML read from a stream to ensure that it is valid. Only the XML preamble and DOCTYPE are buffered in memory
+     * while they are replaced, and the rest of the content is streamed directly to the validator.
+     *
+     * @param method      The validation method to use during validation.
+     * @param xml         The stream to read the XML to be validated from.
+     * @param fileName    The filename of the DTD/Schema data in the resource pack.
+     * @param entities    The entity data to be used to validate against.
+     * @param rootEleName The name of the root XML Element, or null if it should be read from the XML.
+     * @param resources   The resource pack that holds the DTD/Schema and any additional files needed during the validation.
+     * @return True if the XML is valid, otherwise false.
+     */
+    public boolean validate(final ValidationMethod method, final InputStream xml, final String fileName, final String entities,
+            final String rootEleName, final ResourcePack resources) {
+        if (xml == null || fileName == null || resources == null || !resources.contains(fileName)) return false;
+
+        errors.clear();
+        lastRecordedError = null;
+
+        try {
+            final BufferedInputStream bufferedXml = new BufferedInputStream(xml, HEADER_CHUNK_SIZE);
+            final XMLHeader header = readHeader(bufferedXml);
+            final String fixedRootEleName = rootEleName == null ? header.getRootElementName() : rootEleName;
+
+            // Splice the fixed preamble and DOCTYPE onto the rest of the stream
+            final String fixedHeader = setXmlPreambleAndDTD(header.getText(), method == ValidationMethod.DTD ? fileName : null,
+                    entities, fixedRootEleName);
+            lineOffset = countLines(fixedHeader, fixedHeader.length()) - countLines(header.getText(), header.getText().length());
+            final InputStream fixedXml = new SequenceInputStream(new ByteArrayInputStream(fixedHeader.getBytes(header.getEncoding())),
+                    bufferedXml);
+
+            final Resolver resolver = new Resolver(resources);
+            if (method == ValidationMethod.DTD) {
+                validateDTD(resolver, fixedXml);
+            } else {
+                validateSchema(method, resolver, getSchema(method, fileName, resources), fixedXml);
+            }
+        } catch (SAXParseException e) {
+            // Errors that have already been collected will have been handled when they were collected
+            if (e != lastRecordedError) {
+                recordError(e);
+            }
+            return false;
+        } catch (Exception e) {
+            LOG.error("An error occurred validating the XML", e);
+            return false;
+        }
+        return errors.isEmpty();
+    }
+
+    /**
+     * Validates some XML read from a file to ensure that it is valid. The file is streamed, so only the XML preamble and DOCTYPE are
+     * held in memory.
+     *
+     * @param method      The validation method to use during validation.
+     * @param xml         The file containing the XML to be validated.
+     * @param fileName    The filename of the DTD/Schema data in the resource pack.
+     * @param entities    The entity data to be used to validate against.
+     * @param rootEleName The name of the root XML Element, or null if it should be read from the XML.
+     * @param resources   The resource pack that holds the DTD/Schema and any additional files needed during the validation.
+     * @return True if the XML is valid, otherwise false.
+     */
+    public boolean validate(final ValidationMethod method, final File xml, final String fileName, final String entities,
+            final String rootEleName, final ResourcePack resources) {
+        if (xml == null) return false;
+
+        final InputStream inputStream;
+        try {
+            inputStream = new FileInputStream(xml);
+        } catch (FileNotFoundException e) {
+            LOG.error("Unable to open the XML file to be validated", e);
+            return false;
+        }
+
+        try {
+            return validate(method, inputStream, fileName, entities, rootEleName, resources);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                LOG.error("Failed to close the InputStream", e);
+            }
+        }
+    }
+
+    /**
+     * Validates some XML read from a channel to ensure that it is valid. Only the XML preamble and DOCTYPE are held in memory.
+     *
+     * @param method      The validation method to use during validation.
+     * @param xml         The channel to read the XML to be validated from.
+     * @param fileName    The filename of the DTD/Schema data in the resource pack.
+     * @param entities    The entity data to be used to validate against.
+     * @param rootEleName The name of the root XML Element, or null if it should be read from the XML.
+     * @param resources   The resource pack that holds the DTD/Schema and any additional files needed during the validation.
+     * @return True if the XML is valid, otherwise false.
+     */
+    public boolean validate(final ValidationMethod method, final ReadableByteChannel xml, final String fileName, final String entities,
+            final String rootEleName, final ResourcePack resources) {
+        if (xml == null) return false;
+
+        return validate(method, Channels.newInputStream(xml), fileName, entities, rootEleName, resources);
     }
 
     protected void validateDTD(final Resolver resolver,
             final byte[] xmlData) throws SAXException, ParserConfigurationException, IOException {
+        validateDTD(resolver, new ByteArrayInputStream(xmlData));
+    }
+
+    protected void validateDTD(final Resolver resolver,
+            final InputStream xmlData) throws SAXException, ParserConfigurationException, IOException {
         final SAXParserFactory factory = SAXParserFactory.newInstance();
         factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
         factory.setValidating(true);
@@ -247,26 +643,144 @@ public class XMLValidator {
         final SAXParser parser = factory.newSAXParser();
         final XMLReader reader = parser.getXMLReader();
         reader.setEntityResolver(resolver);
-        reader.setErrorHandler(new ErrorHandler());
-        reader.parse(new InputSource(new ByteArrayInputStream(xmlData)));
+        reader.setErrorHandler(createErrorHandler());
+        reader.parse(new InputSource(xmlData));
     }
 
     protected void validateSchema(final ValidationMethod method, final Resolver resolver, final byte[] schemaData,
             byte[] xmlData) throws SAXException, IOException {
+        validateSchema(method, resolver, new ByteArrayInputStream(schemaData), new ByteArrayInputStream(xmlData));
+    }
+
+    protected void validateSchema(final ValidationMethod method, final Resolver resolver, final InputStream schemaData,
+            final InputStream xmlData) throws SAXException, IOException {
         final SchemaFactory schemaFactory = SchemaFactory.newInstance(method.schemaLanguage);
         schemaFactory.setResourceResolver(resolver);
-        final Schema schema = schemaFactory.newSchema(new StreamSource(new ByteArrayInputStream(schemaData)));
+        final Schema schema = schemaFactory.newSchema(new StreamSource(schemaData));
+
+        validateSchema(method, resolver, schema, xmlData);
+    }
 
+    protected void validateSchema(final ValidationMethod method, final Resolver resolver, final Schema schema,
+            final InputStream xmlData) throws SAXException, IOException {
         final Validator validator = schema.newValidator();
-        validator.setErrorHandler(new ErrorHandler());
+        validator.setErrorHandler(createErrorHandler());
         validator.setResourceResolver(resolver);
-        validator.validate(new StreamSource(new ByteArrayInputStream(xmlData)));
+        validator.validate(new StreamSource(xmlData));
+    }
+
+    /**
+     * Get the compiled version of a Schema, compiling it if it hasn't been used before. Compiled Schemas are cached by the validation
+     * method, the file name and the content of the resources, and if multiple threads request the same Schema then only one of
+     * them will compile it.
+     *
+     * @param method    The validation method the Schema is for.
+     * @param fileName  The filename of the Schema data in the resource pack.
+     * @param resources The resource pack that holds the Schema and any files it includes.
+     * @return The compiled Schema.
+     * @throws SAXException Thrown if the Schema can't be compiled.
+     */
+    public static Schema getSchema(final ValidationMethod method, final String fileName, final ResourcePack resources) throws SAXException {
+        if (method == ValidationMethod.DTD) throw new IllegalArgumentException("DTDs can't be compiled into a Schema");
+
+        final String key = method.name() + "\u0000" + fileName + "\u0000" + resources.getContentHash();
+        FutureTask<Schema> schema = SCHEMA_CACHE.get(key);
+        if (schema == null) {
+            final FutureTask<Schema> newSchema = new FutureTask<Schema>(new Callable<Schema>() {
+                @Override
+                public Schema call() throws Exception {
+                    final long start = System.currentTimeMillis();
+                    System.setProperty(SchemaFactory.class.getName() + ":" + XMLConstants.RELAXNG_NS_URI,
+                            XMLSyntaxSchemaFactory.class.getName());
+                    final SchemaFactory schemaFactory = SchemaFactory.newInstance(method.schemaLanguage);
+                    schemaFactory.setResourceResolver(new Resolver(resources));
+                    final Schema compiledSchema = schemaFactory.newSchema(new StreamSource(resources.getInputStream(fileName)));
+                    LOG.debug("Compiled the {} schema in {} ms", fileName, System.currentTimeMillis() - start);
+                    return compiledSchema;
+                }
+            });
+            synchronized (SCHEMA_CACHE) {
+                schema = SCHEMA_CACHE.get(key);
+                if (schema == null) {
+                    SCHEMA_CACHE.put(key, newSchema);
+                }
+            }
+            if (schema == null) {
+                schema = newSchema;
+                schema.run();
+            }
+        }
+
+        try {
+            return schema.get();
+        } catch (ExecutionException e) {
+            // Don't cache failures, so that the schema can be fixed
+            synchronized (SCHEMA_CACHE) {
+                if (SCHEMA_CACHE.get(key) == schema) {
+                    SCHEMA_CACHE.remove(key);
+                }
+            }
+            if (e.getCause() instanceof SAXException) {
+                throw (SAXException) e.getCause();
+            } else {
+                throw new SAXException(e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * Clears any compiled Schemas.
+     */
+    public static void clearSchemaCache() {
+        SCHEMA_CACHE.clear();
+    }
+
+    protected org.xml.sax.ErrorHandler createErrorHandler() {
+        return maxErrors == 1 ? new ErrorHandler() : new CollectingErrorHandler();
     }
 
     public String getErrorText() {
         return errorText;
     }
 
+    /**
+     * Get the errors that were found by the last validation. When the validator was created with a maximum number of errors
+     * greater than 1, this will contain every error found up to that limit, otherwise it will only contain the first error.
+     *
+     * @return The list of errors, with the line and column numbers relative to the XML that was passed to the validator.
+     */
+    public List<ValidationError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    public List<String> getContextFreeElements() {
+        return contextFreeElements;
+    }
+
+    /**
+     * Sets the names of the elements that can be validated on their own during incremental validation. By default this is
+     * {@link #DOCBOOK_50_CONTEXT_FREE_ELEMENTS}.
+     *
+     * @param contextFreeElements The element names that can be validated without the context of their ancestors.
+     */
+    public void setContextFreeElements(final List<String> contextFreeElements) {
+        this.contextFreeElements = contextFreeElements == null ? Collections.<String>emptyList() : contextFreeElements;
+    }
+
+    /**
+     * Clears any cached validation verdicts used by incremental validation.
+     */
+    public static void clearVerdictCache() {
+        VERDICT_CACHE.clear();
+    }
+
     public void setErrorText(String errorText) {
         this.errorText = errorText;
     }
@@ -278,6 +792,152 @@ public class XMLValidator {
         return true;
     }
 
+    /**
+     * Records an error in the list of errors found, and then passes it on to be handled.
+     *
+     * @param error The error to be recorded.
+     * @return True if the error budget has been used up and validation should be aborted, otherwise false.
+     */
+    private boolean recordError(final SAXParseException error) {
+        lastRecordedError = error;
+
+        // Adjust the line number to account for any lines added by setXmlPreambleAndDTD
+        int lineNumber = error.getLineNumber();
+        if (lineNumber > 0 && lineNumber - lineOffset > 0) {
+            lineNumber -= lineOffset;
+        }
+        errors.add(new ValidationError(error.getMessage(), lineNumber, error.getColumnNumber()));
+        handleError(error);
+
+        return maxErrors >= 1 && errors.size() >= maxErrors;
+    }
+
+    /**
+     * Calculates the number of lines that were added to the start of some XML, by comparing the line that the root element starts on.
+     *
+     * @param originalXml The original XML.
+     * @param fixedXml    The XML with the preamble and DOCTYPE added or replaced.
+     * @return The number of lines that were added.
+     */
+    private static int calculateLineOffset(final String originalXml, final String fixedXml) {
+        final int originalLine = countLines(originalXml, Math.max(0, findRootElementStart(originalXml)));
+        final int fixedLine = countLines(fixedXml, Math.max(0, findRootElementStart(fixedXml)));
+        return fixedLine - originalLine;
+    }
+
+    /**
+     * Finds the start of the root element, by skipping over any processing instructions, comments or DOCTYPE declarations.
+     *
+     * @return The index of the root element start tag, or -1 if it couldn't be found.
+     */
+    private static int findRootElementStart(final String xml) {
+        return new RootElementScanner().scan(xml);
+    }
+
+    /**
+     * Reads the start of some XML from a stream, up to the start of the root element. The stream is left positioned at the start
+     * of the root element.
+     *
+     * @param xml The stream to read the XML from.
+     * @return The details of the XML header.
+     * @throws IOException Thrown if the stream can't be read or the root element can't be found.
+     */
+    private static XMLHeader readHeader(final BufferedInputStream xml) throws IOException {
+        xml.mark(MAX_HEADER_SIZE);
+
+        byte[] data = new byte[HEADER_CHUNK_SIZE];
+        int length = 0;
+        boolean endOfStream = false;
+        String encoding = null;
+        CharsetDecoder decoder = null;
+        final StringBuilder text = new StringBuilder();
+        final RootElementScanner scanner = new RootElementScanner();
+        int decodedLength = 0;
+        while (!endOfStream && length < MAX_HEADER_SIZE) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, Math.min(data.length * 2, MAX_HEADER_SIZE));
+            }
+            final int read = xml.read(data, length, Math.min(HEADER_CHUNK_SIZE, data.length - length));
+            if (read == -1) {
+                endOfStream = true;
+            } else {
+                length += read;
+            }
+
+            // The encoding can only be detected once the BOM and XML preamble have been read
+            if (encoding == null) {
+                if (!endOfStream && length < HEADER_CHUNK_SIZE) continue;
+                encoding = findEncoding(Arrays.copyOf(data, length));
+                decoder = Charset.forName(encoding).newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(
+                        CodingErrorAction.REPLACE);
+            }
+
+            // Only decode and scan the data that has been read since the last chunk
+            final ByteBuffer input = ByteBuffer.wrap(data, decodedLength, length - decodedLength);
+            final CharBuffer output = CharBuffer.allocate((int) (input.remaining() * decoder.maxCharsPerByte()) + 1);
+            decoder.decode(input, output, endOfStream);
+            if (endOfStream) decoder.flush(output);
+            decodedLength = input.position();
+            output.flip();
+            text.append(output);
+
+            final int rootElementStart = scanner.scan(text);
+            final int rootElementNameEnd = rootElementStart == -1 ? -1 : findElementNameEnd(text, rootElementStart);
+            if (rootElementNameEnd != -1) {
+                final String header = text.substring(0, rootElementStart);
+
+                // Move the stream to the start of the root element
+                xml.reset();
+                long remaining = header.getBytes(encoding).length;
+                while (remaining > 0) {
+                    final long skipped = xml.skip(remaining);
+                    if (skipped <= 0) throw new IOException("Unable to skip over the XML header");
+                    remaining -= skipped;
+                }
+
+                // Drop any byte order mark, since the header will be re-encoded
+                final String fixedHeader = header.startsWith("\uFEFF") ? header.substring(1) : header;
+                return new XMLHeader(fixedHeader, encoding, text.substring(rootElementStart + 1, rootElementNameEnd));
+            }
+        }
+
+        throw new IOException("Unable to find the root element within the first " + MAX_HEADER_SIZE + " bytes");
+    }
+
+    private static String findEncoding(final byte[] data) throws IOException {
+        if (data.length >= 2 && data[0] == (byte) 0xFE && data[1] == (byte) 0xFF) {
+            return "UTF-16BE";
+        } else if (data.length >= 2 && data[0] == (byte) 0xFF && data[1] == (byte) 0xFE) {
+            return "UTF-16LE";
+        } else if (data.length >= 3 && data[0] == (byte) 0xEF && data[1] == (byte) 0xBB && data[2] == (byte) 0xBF) {
+            return "UTF-8";
+        }
+
+        final String encoding = XMLUtilities.findEncoding(new String(data, "ISO-8859-1"));
+        return encoding == null ? "UTF-8" : encoding;
+    }
+
+    /**
+     * Finds the end of an elements name in a start tag.
+     *
+     * @return The index of the character after the name, or -1 if the end of the name hasn't been read yet.
+     */
+    private static int findElementNameEnd(final CharSequence xml, final int elementStart) {
+        for (int i = elementStart + 1; i < xml.length(); i++) {
+            final char c = xml.charAt(i);
+            if (Character.isWhitespace(c) || c == '>' || c == '/') return i;
+        }
+        return -1;
+    }
+
+    private static int countLines(final String xml, final int endIndex) {
+        int lines = 0;
+        for (int i = 0; i < endIndex; i++) {
+            if (xml.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+
     /**
      * Sets the DTD for an xml file. If there are any entities then they are removed. This function will also add the preamble to the XML
      * if it doesn't exist.
@@ -357,10 +1017,14 @@ public class XMLValidator {
     }
 
     protected static class Resolver implements EntityResolver, LSResourceResolver {
-        private final Map<String, byte[]> files;
+        private final ResourcePack files;
         private DOMImplementationLS impl;
 
         public Resolver(final Map<String, byte[]> files) {
+            this(ResourcePack.fromMap(files));
+        }
+
+        public Resolver(final ResourcePack files) {
             this.files = files;
             try {
                 impl = (DOMImplementationLS) DOMImplementationRegistry.newInstance().getDOMImplementation("LS");
@@ -370,19 +1034,19 @@ public class XMLValidator {
         }
 
         /**
-         * A function that will resolve the dtd file location to the dtd byte[] data specified, if the System ID matches the dtd filename.
+         * A function that will resolve the dtd file location to the dtd data specified, if the System ID matches the dtd filename.
          * Otherwise a null InputSource will be returned.
          *
          * @param publicId The Public ID of the DTD to be resolved.
          * @param systemId The System ID of the DTD to be resolved.
-         * @return An input stream that will read from the passed dtd byte array.
+         * @return An input stream that will read from the matching resource.
          */
         @Override
         public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
             final InputSource source = new InputSource();
-            for (final Map.Entry<String, byte[]> file : files.entrySet()) {
-                if (systemId.endsWith(file.getKey())) {
-                    source.setByteStream(new ByteArrayInputStream(file.getValue()));
+            for (final String fileName : files.getNames()) {
+                if (systemId.endsWith(fileName)) {
+                    source.setByteStream(files.getInputStream(fileName));
                     return source;
                 }
             }
@@ -393,9 +1057,9 @@ public class XMLValidator {
         @Override
         public LSInput resolveResource(final String type, final String namespace, final String publicId, final String systemId,
                 final String baseURI) {
-            if (files.containsKey(systemId)) {
+            if (files.contains(systemId)) {
                 final LSInput source = impl.createLSInput();
-                source.setByteStream(new ByteArrayInputStream(files.get(systemId)));
+                source.setByteStream(files.getInputStream(systemId));
                 return source;
             } else {
                 return null;
@@ -403,6 +1067,152 @@ public class XMLValidator {
         }
     }
 
+    /**
+     * Finds the start of the root element in some XML, skipping over any processing instructions, comments and the DOCTYPE. The XML
+     * can be scanned as it is read, in which case each scan carries on from where the previous scan finished.
+     */
+    private static class RootElementScanner {
+        private static final String DOCTYPE_START = "<!DOCTYPE";
+        private static final String COMMENT_START = "<!--";
+
+        /**
+         * The start of the declaration currently being skipped, or the position to search for the next declaration from.
+         */
+        private int position = 0;
+        private int searchPosition = -1;
+        private String declarationEnd;
+        private int doctypeState;
+
+        /**
+         * Scans some XML that has had more content appended since the last scan.
+         *
+         * @return The index of the root element, or -1 if it hasn't been read yet.
+         */
+        public int scan(final CharSequence xml) {
+            while (true) {
+                if (searchPosition == -1) {
+                    // Find the next declaration or element
+                    while (position < xml.length() && xml.charAt(position) != '<') {
+                        position++;
+                    }
+                    if (position + 1 >= xml.length()) return -1;
+
+                    final char type = xml.charAt(position + 1);
+                    if (type == '?') {
+                        declarationEnd = "?>";
+                    } else if (startsWith(xml, position, COMMENT_START)) {
+                        declarationEnd = "-->";
+                    } else if (startsWith(xml, position, DOCTYPE_START)) {
+                        declarationEnd = null;
+                        doctypeState = 0;
+                    } else if (type == '!' && (isPartial(xml, position, COMMENT_START) || isPartial(xml, position, DOCTYPE_START))) {
+                        // Wait until there is enough content to know what the declaration is
+                        return -1;
+                    } else {
+                        return position;
+                    }
+                    searchPosition = position + 2;
+                }
+
+                final int end = declarationEnd == null ? findDoctypeEnd(xml) : findDeclarationEnd(xml);
+                if (end == -1) return -1;
+                position = end;
+                searchPosition = -1;
+            }
+        }
+
+        private int findDeclarationEnd(final CharSequence xml) {
+            for (int i = searchPosition; i <= xml.length() - declarationEnd.length(); i++) {
+                if (startsWith(xml, i, declarationEnd)) return i + declarationEnd.length();
+            }
+
+            searchPosition = Math.max(searchPosition, xml.length() - declarationEnd.length() + 1);
+            return -1;
+        }
+
+        /**
+         * Finds the end of the DOCTYPE, where the end can't be inside the internal subset.
+         */
+        private int findDoctypeEnd(final CharSequence xml) {
+            for (int i = searchPosition; i < xml.length(); i++) {
+                final char c = xml.charAt(i);
+                if (doctypeState == 0 && c == '[') {
+                    doctypeState = 1;
+                } else if (doctypeState == 1 && c == ']') {
+                    doctypeState = 2;
+                } else if (doctypeState != 1 && c == '>') {
+                    return i + 1;
+                }
+            }
+
+            searchPosition = xml.length();
+            return -1;
+        }
+
+        private static boolean startsWith(final CharSequence xml, final int index, final String prefix) {
+            if (index + prefix.length() > xml.length()) return false;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (xml.charAt(index + i) != prefix.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private static boolean isPartial(final CharSequence xml, final int index, final String prefix) {
+            return xml.length() - index < prefix.length() && startsWith(prefix, 0, xml.subSequence(index, xml.length()).toString());
+        }
+    }
+
+    /**
+     * The details of the start of some XML, up to the root element.
+     */
+    private static class XMLHeader {
+        private final String text;
+        private final String encoding;
+        private final String rootElementName;
+
+        private XMLHeader(final String text, final String encoding, final String rootElementName) {
+            this.text = text;
+            this.encoding = encoding;
+            this.rootElementName = rootElementName;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public String getRootElementName() {
+            return rootElementName;
+        }
+    }
+
+    /**
+     * An error handler that collects errors until the error budget has been used up, after which the validation is aborted.
+     */
+    protected class CollectingErrorHandler implements org.xml.sax.ErrorHandler {
+        @Override
+        public void error(SAXParseException ex) throws SAXParseException {
+            if (recordError(ex)) {
+                throw ex;
+            }
+        }
+
+        @Override
+        public void fatalError(SAXParseException ex) throws SAXParseException {
+            // The parser can't recover from fatal errors, so record it and stop
+            recordError(ex);
+            throw ex;
+        }
+
+        @Override
+        public void warning(SAXParseException ex) throws SAXParseException {
+            // Do nothing if its a warning
+        }
+    }
+
     protected static class ErrorHandler implements org.xml.sax.ErrorHandler {
         @Override
         public void error(SAXParseException ex) throws SAXParseException {
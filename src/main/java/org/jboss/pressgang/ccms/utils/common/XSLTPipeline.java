@@ -0,0 +1,330 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.common;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.pressgang.ccms.utils.structures.ResourcePack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * A sequence of stylesheets that are applied one after the other. The stages are chained together using SAX TransformerHandlers, so
+ * the output of each stage is streamed directly into the next stage without being serialised and parsed again.
+ * <p/>
+ * A pipeline can be run multiple times, from multiple threads. The time spent in each stage is recorded, excluding the time spent in
+ * the stages after it.
+ */
+public class XSLTPipeline {
+    private static final Logger LOG = LoggerFactory.getLogger(XSLTPipeline.class);
+
+    private final List<Stage> stages = new ArrayList<Stage>();
+
+    protected XSLTPipeline() {
+    }
+
+    /**
+     * Adds a stylesheet to the end of the pipeline. The stylesheet is compiled (or fetched from the Templates cache) straight away.
+     *
+     * @param xsl              The stylesheet.
+     * @param xslSystemId      The system id of the stylesheet.
+     * @param resources        The resources that can be imported by the stylesheet.
+     * @param globalParameters The global parameters to pass to the stylesheet, or null if there are none.
+     * @return This pipeline.
+     * @throws TransformerException Thrown if the stylesheet can't be compiled.
+     */
+    public XSLTPipeline addStage(final String xsl, final String xslSystemId, final ResourcePack resources,
+            final Map<String, String> globalParameters) throws TransformerException {
+        return addStage(xslSystemId, XSLTUtilities.getTemplates(xsl, xslSystemId, resources), globalParameters);
+    }
+
+    /**
+     * Adds an already compiled stylesheet to the end of the pipeline.
+     *
+     * @param name             The name of the stage, which is used when reporting the stage timings.
+     * @param templates        The compiled stylesheet.
+     * @param globalParameters The global parameters to pass to the stylesheet, or null if there are none.
+     * @return This pipeline.
+     */
+    public XSLTPipeline addStage(final String name, final Templates templates, final Map<String, String> globalParameters) {
+        if (templates == null) throw new IllegalArgumentException("templates cannot be null");
+
+        stages.add(new Stage(name, templates, globalParameters));
+        return this;
+    }
+
+    public List<Stage> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Runs the XML source through each stage of the pipeline, and sends the output of the last stage to the result.
+     *
+     * @param source The XML to transform.
+     * @param result The result to send the output of the last stage to.
+     * @throws TransformerException Thrown if any of the stages fail.
+     */
+    public void transform(final Source source, final Result result) throws TransformerException {
+        if (source == null) throw new IllegalArgumentException("source cannot be null");
+        if (result == null) throw new IllegalArgumentException("result cannot be null");
+        if (stages.isEmpty()) throw new IllegalStateException("The pipeline doesn't have any stages");
+
+        // Build the chain from the last stage back to the first, so each handler can be pointed at the next one
+        final TimedContentHandler[] timedHandlers = new TimedContentHandler[stages.size()];
+        Result nextResult = result;
+        TransformerHandler handler = null;
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            final Stage stage = stages.get(i);
+            handler = stage.newTransformerHandler();
+            for (final Map.Entry<String, String> parameter : stage.parameters.entrySet()) {
+                handler.getTransformer().setParameter(parameter.getKey(), parameter.getValue());
+            }
+            handler.setResult(nextResult);
+
+            timedHandlers[i] = new TimedContentHandler(handler);
+            final SAXResult saxResult = new SAXResult(timedHandlers[i]);
+            saxResult.setLexicalHandler(handler);
+            nextResult = saxResult;
+        }
+
+        // Feed the source into the first stage
+        final long start = System.nanoTime();
+        stages.get(0).newIdentityTransformer().transform(source, nextResult);
+        final long totalTime = System.nanoTime() - start;
+
+        for (int i = 0; i < stages.size(); i++) {
+            final long downstreamTime = i + 1 < stages.size() ? timedHandlers[i + 1].time : 0;
+            stages.get(i).recordTime(timedHandlers[i].time - downstreamTime);
+        }
+
+        LOG.debug("Ran the {} stage XSLT pipeline in {} ms", stages.size(), totalTime / 1000000L);
+    }
+
+    private static SAXTransformerFactory getSAXTransformerFactory(final Templates templates) {
+        // Handlers have to be created by the same implementation that compiled the stylesheet
+        final String factoryClass = templates.getClass().getName().startsWith(
+                "org.apache.xalan.xsltc.") ? XSLTUtilities.XSLTC_TRANSFORMER_FACTORY : XSLTUtilities.XALAN_TRANSFORMER_FACTORY;
+        return (SAXTransformerFactory) TransformerFactory.newInstance(factoryClass, XSLTPipeline.class.getClassLoader());
+    }
+
+    /**
+     * A single stylesheet in a pipeline, along with the time that has been spent running it.
+     */
+    public static class Stage {
+        private final String name;
+        private final Templates templates;
+        private final Map<String, String> parameters;
+        /**
+         * The factory used to create the handlers for the stage. TransformerFactories aren't guaranteed to be thread safe, so it is
+         * only used by one thread at a time.
+         */
+        private final SAXTransformerFactory transformerFactory;
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong totalTime = new AtomicLong();
+        private volatile long lastTime = 0;
+
+        private Stage(final String name, final Templates templates, final Map<String, String> parameters) {
+            this.name = name;
+            this.templates = templates;
+            this.parameters = parameters == null ? new HashMap<String, String>() : new HashMap<String, String>(parameters);
+            this.transformerFactory = getSAXTransformerFactory(templates);
+        }
+
+        private TransformerHandler newTransformerHandler() throws TransformerException {
+            synchronized (transformerFactory) {
+                return transformerFactory.newTransformerHandler(templates);
+            }
+        }
+
+        private Transformer newIdentityTransformer() throws TransformerException {
+            synchronized (transformerFactory) {
+                return transformerFactory.newTransformer();
+            }
+        }
+
+        private void recordTime(final long time) {
+            lastTime = time;
+            totalTime.addAndGet(time);
+            runs.incrementAndGet();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Map<String, String> getParameters() {
+            return Collections.unmodifiableMap(parameters);
+        }
+
+        public long getRunCount() {
+            return runs.get();
+        }
+
+        /**
+         * @return The time taken by the stage the last time the pipeline was run, in milliseconds.
+         */
+        public long getLastTime() {
+            return lastTime / 1000000L;
+        }
+
+        /**
+         * @return The total time taken by the stage over every run of the pipeline, in milliseconds.
+         */
+        public long getTotalTime() {
+            return totalTime.get() / 1000000L;
+        }
+    }
+
+    /**
+     * A ContentHandler that records how long is spent processing the events it receives, which includes the time spent by any
+     * handlers it forwards its output to.
+     */
+    private static class TimedContentHandler implements ContentHandler {
+        private final ContentHandler handler;
+        private long time = 0;
+
+        private TimedContentHandler(final ContentHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void setDocumentLocator(final Locator locator) {
+            handler.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                handler.startDocument();
+            } finally {
+                time += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                handler.endDocument();
+            } finally {
+                time += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                handler.startPrefixMapping(prefix, uri);
+            } finally {
+                time += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(final String prefix) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                handler.endPrefixMapping(prefix);
+            } finally {
+                time += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName,
+                final Attributes atts) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                handler.startElement(uri, localName, qName, atts);
+            } finally {
+                time += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                handler.endElement(uri, localName, qName);
+            } finally {
+                time += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) throws SAXException {
+            final long startTime = System.nanoTime();
+            try {
+                handler.characters(ch, start, length);
+            } finally {
+                time += System.nanoTime() - startTime;
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+            final long startTime = System.nanoTime();
+            try {
+                handler.ignorableWhitespace(ch, start, length);
+            } finally {
+                time += System.nanoTime() - startTime;
+            }
+        }
+
+        @Override
+        public void processingInstruction(final String target, final String data) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                handler.processingInstruction(target, data);
+            } finally {
+                time += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void skippedEntity(final String name) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                handler.skippedEntity(name);
+            } finally {
+                time += System.nanoTime() - start;
+            }
+        }
+    }
+}
@@ -19,29 +19,133 @@
 
 package org.jboss.pressgang.ccms.utils.common;
 
+import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.URIResolver;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.xalan.processor.TransformerFactoryImpl;
+import org.jboss.pressgang.ccms.utils.structures.RenderCache;
+import org.jboss.pressgang.ccms.utils.structures.ResourcePack;
+import org.jboss.pressgang.ccms.utils.structures.SAXEventBuffer;
+import org.jboss.pressgang.ccms.utils.structures.TemplatesCache;
+import org.jboss.pressgang.ccms.utils.structures.TransformResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
 
 public class XSLTUtilities {
     private static final Logger LOG = LoggerFactory.getLogger(XSLTUtilities.class);
-    private static Map<String, Templates> templates = new ConcurrentHashMap<String, Templates>();
+    static final String XALAN_TRANSFORMER_FACTORY = "org.apache.xalan.processor.TransformerFactoryImpl";
+    static final String XSLTC_TRANSFORMER_FACTORY = "org.apache.xalan.xsltc.trax.TransformerFactoryImpl";
+    private static final String TRANSLET_PACKAGE = "org.jboss.pressgang.ccms.translets";
+    static final String COMPILE_FAILURE_SUFFIX = ".failed";
+    private static final int MAX_CACHED_TEMPLATES = 50;
+    private static final TemplatesCache templates = new TemplatesCache(MAX_CACHED_TEMPLATES);
+    private static volatile File transletCacheDirectory = null;
+    private static volatile RenderCache renderCache = null;
+    private static volatile boolean stylesheetModuleCacheEnabled = true;
+
+    /**
+     * Enables the compiled (XSLTC translet) mode, where stylesheets are compiled into java classes that are cached on disk. Cached
+     * translets are keyed by the hash of the stylesheet and its resources, so they are loaded directly after a restart instead of
+     * being recompiled. Stylesheets that can't be compiled by XSLTC fall back to the interpretive processor, and the failure is
+     * also recorded in the directory so that XSLTC isn't tried again for the same stylesheet and resources.
+     *
+     * @param directory The directory to cache the compiled translets in, or null to only use the interpretive processor.
+     */
+    public static void setTransletCacheDirectory(final File directory) {
+        transletCacheDirectory = directory;
+    }
+
+    public static File getTransletCacheDirectory() {
+        return transletCacheDirectory;
+    }
+
+    /**
+     * Sets the cache used to hold the output of the String based transforms, so that transforming the same XML with the same
+     * stylesheet, resources and parameters doesn't run the stylesheet again.
+     *
+     * @param cache The cache to use, or null to disable caching the transformed output.
+     */
+    public static void setRenderCache(final RenderCache cache) {
+        renderCache = cache;
+    }
+
+    public static RenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    /**
+     * Enables or disables the cache of parsed stylesheet modules. When enabled, the stylesheets that are imported or included from
+     * the resources are only parsed once and the parsed modules are reused when compiling other stylesheets that import the same
+     * modules. Note that errors in modules loaded from the cache won't report the line they occurred on.
+     *
+     * @param enabled true if parsed stylesheet modules should be cached, otherwise false.
+     */
+    public static void setStylesheetModuleCacheEnabled(final boolean enabled) {
+        stylesheetModuleCacheEnabled = enabled;
+        if (!enabled) {
+            XSLTResolver.MODULES.clear();
+        }
+    }
+
+    public static boolean isStylesheetModuleCacheEnabled() {
+        return stylesheetModuleCacheEnabled;
+    }
+
+    /**
+     * Removes all the parsed stylesheet modules from the cache.
+     */
+    public static void clearStylesheetModuleCache() {
+        XSLTResolver.MODULES.clear();
+    }
+
+    /**
+     * Get the cache that holds the compiled stylesheets, so that its hit and compile time metrics can be inspected.
+     *
+     * @return The compiled stylesheet cache.
+     */
+    public static TemplatesCache getTemplatesCache() {
+        return templates;
+    }
+
+    /**
+     * Removes any compiled versions of a stylesheet, so that it will be recompiled the next time it is used. This is only needed
+     * when a resource imported by the stylesheet has changed, as changes to the stylesheet itself are detected automatically.
+     *
+     * @param xslSystemId The system id of the stylesheet.
+     */
+    public static void invalidateTemplates(final String xslSystemId) {
+        templates.invalidate(xslSystemId);
+    }
 
     public static String transformXML(final String xml, final String xsl, final String xslSystemId,
             final Map<String, byte[]> resources) throws TransformerException {
@@ -50,6 +154,13 @@ public class XSLTUtilities {
 
     public static String transformXML(final String xml, final String xsl, final String xslSystemId, final Map<String, byte[]> resources,
             final Map<String, String> globalParameters) throws TransformerException {
+        if (resources == null) return null;
+
+        return transformXML(xml, xsl, xslSystemId, ResourcePack.fromMap(resources), globalParameters);
+    }
+
+    public static String transformXML(final String xml, final String xsl, final String xslSystemId, final ResourcePack resources,
+            final Map<String, String> globalParameters) throws TransformerException {
         if (xml == null || xml.trim().length() == 0) return null;
 
         if (xsl == null || xsl.trim().length() == 0) return null;
@@ -57,79 +168,437 @@ public class XSLTUtilities {
         if (resources == null) return null;
 
         try {
+            // Check if the output has already been rendered
+            final RenderCache cache = renderCache;
+            final String cacheKey = cache == null ? null : RenderCache.createKey(xml, xsl, xslSystemId, resources,
+                    globalParameters);
+            if (cache != null) {
+                final String cachedOutput = cache.get(cacheKey);
+                if (cachedOutput != null) {
+                    return cachedOutput;
+                }
+            }
+
             final ByteArrayInputStream xmlStream = new ByteArrayInputStream(xml.getBytes("UTF-8"));
-            final ByteArrayInputStream xslStream = new ByteArrayInputStream(xsl.getBytes("UTF-8"));
             final ByteArrayOutputStream retValueStream = new ByteArrayOutputStream();
 
-            // http://xml.apache.org/xalan-j/usagepatterns.html#basic
-            Templates template = null;
-            synchronized (templates) {
-                if (templates.containsKey(xslSystemId)) {
-                    template = templates.get(xslSystemId);
-                } else {
-                    System.out.println("Initialising Templates for " + xslSystemId);
-
-                    /*
-                     * Instantiate a TransformerFactory. make sure to get a
-                     * org.apache.xalan.processor.TransformerFactoryImpl instead
-                     * of the default
-                     * org.apache.xalan.xsltc.trax.TransformerFactoryImpl. The
-                     * latter doesn't work for docbook xsl.
-                     */
-                    System.setProperty("javax.xml.transform.TransformerFactory", "org.apache.xalan.processor.TransformerFactoryImpl");
-                    final TransformerFactory transformerFactory = TransformerFactory.newInstance();
-
-                    /*
-                     * Set the URIResolver that will handle request to external
-                     * resources
-                     */
-                    transformerFactory.setURIResolver(new XSLTResolver(resources));
-
-                    /*
-                     * see http://nlp.stanford.edu/nlp/javadoc/xalan-docs/
-                     * extensionslib .html#nodeinfo
-                     */
-                    transformerFactory.setAttribute(TransformerFactoryImpl.FEATURE_SOURCE_LOCATION, Boolean.TRUE);
-                    // transformerFactory.setAttribute(TransformerFactoryImpl.FEATURE_INCREMENTAL,
-                    // Boolean.TRUE);
-
-                    final StreamSource xslStreamSource = new StreamSource(xslStream);
-                    xslStreamSource.setSystemId(xslSystemId);
-
-                    /* save the template */
-                    templates.put(xslSystemId, transformerFactory.newTemplates(xslStreamSource));
-
-                    System.out.println("Done Initialising Templates for " + xslSystemId);
+            transform(new StreamSource(xmlStream), xsl, xslSystemId, resources, globalParameters, new StreamResult(retValueStream));
+
+            final String output = retValueStream.toString();
+            if (cache != null) {
+                cache.put(cacheKey, output);
+            }
+
+            return output;
+
+        } catch (final TransformerException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            LOG.error("Unable to transform the XML content", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Transforms a DOM Document and writes the output directly to a stream.
+     *
+     * @param doc              The document to transform.
+     * @param xsl              The stylesheet to transform the document with.
+     * @param xslSystemId      The system id of the stylesheet.
+     * @param resources        The resources that can be imported by the stylesheet.
+     * @param globalParameters The global parameters to pass to the stylesheet, or null if there are none.
+     * @param outputStream     The stream to write the output to. The stream isn't closed once the transform has finished.
+     * @throws TransformerException Thrown if the stylesheet can't be compiled or the transform fails.
+     */
+    public static void transformXML(final Document doc, final String xsl, final String xslSystemId, final ResourcePack resources,
+            final Map<String, String> globalParameters, final OutputStream outputStream) throws TransformerException {
+        if (doc == null) throw new IllegalArgumentException("doc cannot be null");
+        transformXML(new DOMSource(doc), xsl, xslSystemId, resources, globalParameters, outputStream);
+    }
+
+    /**
+     * Transforms a DOM Document and writes the output directly to a writer.
+     *
+     * @param doc              The document to transform.
+     * @param xsl              The stylesheet to transform the document with.
+     * @param xslSystemId      The system id of the stylesheet.
+     * @param resources        The resources that can be imported by the stylesheet.
+     * @param globalParameters The global parameters to pass to the stylesheet, or null if there are none.
+     * @param writer           The writer to write the output to. The writer isn't closed once the transform has finished.
+     * @throws TransformerException Thrown if the stylesheet can't be compiled or the transform fails.
+     */
+    public static void transformXML(final Document doc, final String xsl, final String xslSystemId, final ResourcePack resources,
+            final Map<String, String> globalParameters, final Writer writer) throws TransformerException {
+        if (doc == null) throw new IllegalArgumentException("doc cannot be null");
+        transformXML(new DOMSource(doc), xsl, xslSystemId, resources, globalParameters, writer);
+    }
+
+    public static void transformXML(final Source source, final String xsl, final String xslSystemId, final ResourcePack resources,
+            final Map<String, String> globalParameters, final OutputStream outputStream) throws TransformerException {
+        if (outputStream == null) throw new IllegalArgumentException("outputStream cannot be null");
+        transform(source, xsl, xslSystemId, resources, globalParameters, new StreamResult(outputStream));
+    }
+
+    public static void transformXML(final Source source, final String xsl, final String xslSystemId, final ResourcePack resources,
+            final Map<String, String> globalParameters, final Writer writer) throws TransformerException {
+        if (writer == null) throw new IllegalArgumentException("writer cannot be null");
+        transform(source, xsl, xslSystemId, resources, globalParameters, new StreamResult(writer));
+    }
+
+    /**
+     * Transforms an XML source and sends the output as SAX events to a ContentHandler, so that it can be processed further without
+     * being serialised.
+     *
+     * @param source           The XML to transform.
+     * @param xsl              The stylesheet to transform the document with.
+     * @param xslSystemId      The system id of the stylesheet.
+     * @param resources        The resources that can be imported by the stylesheet.
+     * @param globalParameters The global parameters to pass to the stylesheet, or null if there are none.
+     * @param contentHandler   The handler to send the output events to.
+     * @throws TransformerException Thrown if the stylesheet can't be compiled or the transform fails.
+     */
+    public static void transformXML(final Source source, final String xsl, final String xslSystemId, final ResourcePack resources,
+            final Map<String, String> globalParameters, final ContentHandler contentHandler) throws TransformerException {
+        if (contentHandler == null) throw new IllegalArgumentException("contentHandler cannot be null");
+        transform(source, xsl, xslSystemId, resources, globalParameters, new SAXResult(contentHandler));
+    }
+
+    /**
+     * Transforms an XML source using a cached compiled stylesheet, and sends the output to a Result.
+     *
+     * @param source           The XML to transform.
+     * @param xsl              The stylesheet to transform the document with.
+     * @param xslSystemId      The system id of the stylesheet.
+     * @param resources        The resources that can be imported by the stylesheet.
+     * @param globalParameters The global parameters to pass to the stylesheet, or null if there are none.
+     * @param result           The result to send the output to.
+     * @throws TransformerException Thrown if the stylesheet can't be compiled or the transform fails.
+     */
+    public static void transform(final Source source, final String xsl, final String xslSystemId, final ResourcePack resources,
+            final Map<String, String> globalParameters, final Result result) throws TransformerException {
+        if (source == null) throw new IllegalArgumentException("source cannot be null");
+
+        // http://xml.apache.org/xalan-j/usagepatterns.html#basic
+        final Templates template = getTemplates(xsl, xslSystemId, resources);
+
+        /*
+         * Use the TransformerFactory to process the stylesheet Source and
+         * generate a Transformer.
+         */
+        final Transformer transformer = template.newTransformer();
+
+        /* set the global variables */
+        if (globalParameters != null) for (final Entry<String, String> paramEntry : globalParameters.entrySet())
+            transformer.setParameter(paramEntry.getKey(), paramEntry.getValue());
+
+        /*
+         * Use the Transformer to transform an XML Source and send the
+         * output to a Result object.
+         */
+        transformer.transform(source, result);
+    }
+
+    /**
+     * Transforms a batch of XML documents with the same stylesheet, using one thread per available processor.
+     *
+     * @see #transformXMLBatch(java.util.List, String, String, ResourcePack, java.util.Map, int)
+     */
+    public static List<TransformResult> transformXMLBatch(final List<String> xmls, final String xsl, final String xslSystemId,
+            final ResourcePack resources, final Map<String, String> globalParameters) throws TransformerException {
+        return transformXMLBatch(xmls, xsl, xslSystemId, resources, globalParameters, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Transforms a batch of XML documents with the same stylesheet, spread over a fixed number of threads. Each thread creates a
+     * single Transformer and resets it between documents, instead of creating a new Transformer for every document.
+     * <p/>
+     * A failure to transform one document doesn't stop the rest of the batch. Instead the error is returned in the result for that
+     * document.
+     *
+     * @param xmls             The XML documents to transform.
+     * @param xsl              The stylesheet to transform the documents with.
+     * @param xslSystemId      The system id of the stylesheet.
+     * @param resources        The resources that can be imported by the stylesheet.
+     * @param globalParameters The global parameters to pass to the stylesheet, or null if there are none.
+     * @param numThreads       The maximum number of threads to use.
+     * @return The results of each transform, in the same order as the XML documents.
+     * @throws TransformerException Thrown if the stylesheet can't be compiled.
+     */
+    public static List<TransformResult> transformXMLBatch(final List<String> xmls, final String xsl, final String xslSystemId,
+            final ResourcePack resources, final Map<String, String> globalParameters, final int numThreads) throws TransformerException {
+        if (xmls == null) throw new IllegalArgumentException("xmls cannot be null");
+        if (numThreads < 1) throw new IllegalArgumentException("numThreads must be greater than 0");
+
+        final Templates template = getTemplates(xsl, xslSystemId, resources);
+        final TransformResult[] results = new TransformResult[xmls.size()];
+        try {
+            ParallelUtilities.runInParallel(results.length, numThreads, new ParallelUtilities.IndexedTaskFactory() {
+                @Override
+                public ParallelUtilities.IndexedTask newTask() {
+                    return new ParallelUtilities.IndexedTask() {
+                        private final RenderCache cache = renderCache;
+                        private Transformer transformer = null;
+
+                        @Override
+                        public void run(final int index) {
+                            final String xml = xmls.get(index);
+                            final String cacheKey = cache == null || xml == null ? null : RenderCache.createKey(xml, xsl, xslSystemId,
+                                    resources, globalParameters);
+                            final String cachedOutput = cacheKey == null ? null : cache.get(cacheKey);
+                            if (cachedOutput != null) {
+                                results[index] = new TransformResult(cachedOutput, null);
+                                return;
+                            }
+
+                            try {
+                                if (transformer == null) {
+                                    transformer = template.newTransformer();
+                                } else {
+                                    transformer.reset();
+                                    transformer.clearParameters();
+                                }
+                                final String output = transformXML(transformer, xml, globalParameters);
+                                if (cacheKey != null) {
+                                    cache.put(cacheKey, output);
+                                }
+                                results[index] = new TransformResult(output, null);
+                            } catch (final Exception ex) {
+                                // The transformer may be left in an inconsistent state, so don't reuse it
+                                transformer = null;
+                                results[index] = new TransformResult(null, ex);
+                            }
+                        }
+                    };
                 }
+            });
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TransformerException(ex);
+        } catch (final ExecutionException ex) {
+            throw new TransformerException(ex.getCause());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private static String transformXML(final Transformer transformer, final String xml,
+            final Map<String, String> globalParameters) throws TransformerException, UnsupportedEncodingException {
+        if (xml == null || xml.trim().length() == 0) return null;
+
+        /* set the global variables */
+        if (globalParameters != null) for (final Entry<String, String> paramEntry : globalParameters.entrySet())
+            transformer.setParameter(paramEntry.getKey(), paramEntry.getValue());
 
-                template = templates.get(xslSystemId);
+        final ByteArrayOutputStream retValueStream = new ByteArrayOutputStream();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(xml.getBytes("UTF-8"))), new StreamResult(retValueStream));
+
+        return retValueStream.toString();
+    }
+
+    /**
+     * Get the compiled version of a stylesheet, compiling it if it hasn't been used before.
+     *
+     * @param xsl         The stylesheet.
+     * @param xslSystemId The system id of the stylesheet.
+     * @param resources   The resources that can be imported by the stylesheet.
+     * @return The compiled stylesheet.
+     * @throws TransformerException Thrown if the stylesheet can't be compiled.
+     */
+    public static Templates getTemplates(final String xsl, final String xslSystemId, final ResourcePack resources) throws
+            TransformerException {
+        if (xsl == null || xsl.trim().length() == 0) throw new IllegalArgumentException("xsl cannot be null or empty");
+        if (resources == null) throw new IllegalArgumentException("resources cannot be null");
+
+        return templates.get(xslSystemId, HashUtilities.generateSHA256(xsl), new Callable<Templates>() {
+            @Override
+            public Templates call() throws Exception {
+                return createTemplates(xsl, xslSystemId, resources);
             }
+        });
+    }
 
-            /*
-             * Use the TransformerFactory to process the stylesheet Source and
-             * generate a Transformer.
-             */
-            final Transformer transformer = template.newTransformer();
+    /**
+     * Creates a new pipeline that can be used to run a set of stylesheets in sequence.
+     *
+     * @return A new empty pipeline.
+     */
+    public static XSLTPipeline newPipeline() {
+        return new XSLTPipeline();
+    }
 
-            /* set the global variables */
-            if (globalParameters != null) for (final Entry<String, String> paramEntry : globalParameters.entrySet())
-                transformer.setParameter(paramEntry.getKey(), paramEntry.getValue());
+    /**
+     * Compiles a stylesheet, using the compiled translet mode if it has been enabled.
+     */
+    private static Templates createTemplates(final String xsl, final String xslSystemId,
+            final ResourcePack resources) throws TransformerException {
+        final long start = System.currentTimeMillis();
+        final File cacheDirectory = transletCacheDirectory;
+        if (cacheDirectory != null) {
+            try {
+                final Templates compiledTemplates = createCompiledTemplates(cacheDirectory, xsl, xslSystemId, resources);
+                if (compiledTemplates != null) {
+                    LOG.info("Initialised compiled Templates for {} in {} ms", xslSystemId, System.currentTimeMillis() - start);
+                    return compiledTemplates;
+                }
+                LOG.debug("XSLTC has already failed to compile {}, so using the interpretive processor", xslSystemId);
+            } catch (final TransformerException ex) {
+                LOG.warn("Unable to compile the Templates for " + xslSystemId + ", so falling back to the interpretive processor", ex);
+            }
+        }
 
-            /*
-             * Use the Transformer to transform an XML Source and send the
-             * output to a Result object.
-             */
-            transformer.transform(new StreamSource(xmlStream), new StreamResult(retValueStream));
+        LOG.debug("Initialising Templates for {}", xslSystemId);
+
+        /*
+         * Instantiate a TransformerFactory. make sure to get a
+         * org.apache.xalan.processor.TransformerFactoryImpl instead
+         * of the default
+         * org.apache.xalan.xsltc.trax.TransformerFactoryImpl. The
+         * latter doesn't work for docbook xsl.
+         */
+        System.setProperty("javax.xml.transform.TransformerFactory", XALAN_TRANSFORMER_FACTORY);
+        final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+
+        /*
+         * Set the URIResolver that will handle request to external
+         * resources
+         */
+        transformerFactory.setURIResolver(new XSLTResolver(resources));
+
+        /*
+         * see http://nlp.stanford.edu/nlp/javadoc/xalan-docs/
+         * extensionslib .html#nodeinfo
+         */
+        transformerFactory.setAttribute(TransformerFactoryImpl.FEATURE_SOURCE_LOCATION, Boolean.TRUE);
+        // transformerFactory.setAttribute(TransformerFactoryImpl.FEATURE_INCREMENTAL,
+        // Boolean.TRUE);
+
+        final Templates interpretedTemplates = transformerFactory.newTemplates(createXSLSource(xsl, xslSystemId));
+
+        LOG.info("Initialised Templates for {} in {} ms", xslSystemId, System.currentTimeMillis() - start);
+
+        return interpretedTemplates;
+    }
 
-            return retValueStream.toString();
+    /**
+     * Loads a previously compiled translet from the cache directory, or compiles the stylesheet with XSLTC and saves the generated
+     * classes to the cache directory if no translet exists. New translets are written to a temporary directory that is then renamed,
+     * so a translet directory is only ever seen once all of its classes have been written.
+     *
+     * @return The compiled Templates, or null if XSLTC has previously failed to compile the stylesheet.
+     */
+    private static Templates createCompiledTemplates(final File cacheDirectory, final String xsl, final String xslSystemId,
+            final ResourcePack resources) throws TransformerException {
+        final String key = getTransletKey(xsl, resources);
+        final File failureMarker = new File(cacheDirectory, key + COMPILE_FAILURE_SUFFIX);
+        if (failureMarker.exists()) return null;
+
+        final String transletName = "Translet" + key;
+        final File transletDirectory = new File(cacheDirectory, key);
+        final File transletClass = new File(transletDirectory, TRANSLET_PACKAGE.replace('.', File.separatorChar) + File.separator +
+                transletName + ".class");
+
+        // Check if the translet has already been compiled
+        if (transletClass.exists()) {
+            try {
+                return loadCompiledTemplates(transletDirectory, transletName, xsl, xslSystemId, resources);
+            } catch (final Exception ex) {
+                LOG.warn("Unable to load the cached translet for " + xslSystemId + ", so it will be recompiled", ex);
+                FileUtilities.deleteDir(transletDirectory);
+            }
+        }
+
+        final File tempDirectory = createTempDirectory(cacheDirectory, key);
+        final TransformerFactory transformerFactory = createCompilingTransformerFactory(transletName, resources);
+        transformerFactory.setAttribute("generate-translet", Boolean.TRUE);
+        transformerFactory.setAttribute("destination-directory", tempDirectory.getAbsolutePath());
 
+        final Templates compiledTemplates;
+        try {
+            compiledTemplates = transformerFactory.newTemplates(createXSLSource(xsl, xslSystemId));
         } catch (final TransformerException ex) {
+            FileUtilities.deleteDir(tempDirectory);
+            saveCompileFailure(failureMarker, xslSystemId, ex);
             throw ex;
-        } catch (final Exception ex) {
-            LOG.error("Unable to transform the XML content", ex);
         }
 
-        return null;
+        // Another thread or process may have saved the same translet in the meantime, in which case its copy is kept
+        if (!tempDirectory.renameTo(transletDirectory)) {
+            FileUtilities.deleteDir(tempDirectory);
+        }
+
+        return compiledTemplates;
+    }
+
+    /**
+     * Get the key that the compiled translet for a stylesheet is cached under.
+     */
+    static String getTransletKey(final String xsl, final ResourcePack resources) {
+        return HashUtilities.generateSHA256(xsl + "\u0000" + resources.getContentHash());
+    }
+
+    /**
+     * Records that XSLTC couldn't compile a stylesheet, along with the reason, so that it won't be compiled again.
+     */
+    private static void saveCompileFailure(final File failureMarker, final String xslSystemId, final TransformerException ex) {
+        try {
+            FileUtilities.saveFile(failureMarker, xslSystemId + "\n" + ex.getMessageAndLocation(), "UTF-8");
+        } catch (final IOException e) {
+            LOG.warn("Unable to record the compile failure at " + failureMarker.getAbsolutePath(), e);
+        }
+    }
+
+    private static File createTempDirectory(final File cacheDirectory, final String key) throws TransformerException {
+        try {
+            if (!cacheDirectory.exists() && !cacheDirectory.mkdirs()) {
+                throw new IOException("Unable to create the translet cache directory " + cacheDirectory.getAbsolutePath());
+            }
+
+            final File tempDirectory = File.createTempFile(key, ".tmp", cacheDirectory);
+            if (!tempDirectory.delete() || !tempDirectory.mkdir()) {
+                throw new IOException("Unable to create the temporary translet directory " + tempDirectory.getAbsolutePath());
+            }
+
+            return tempDirectory;
+        } catch (final IOException ex) {
+            throw new TransformerException(ex);
+        }
+    }
+
+    private static Templates loadCompiledTemplates(final File transletDirectory, final String transletName, final String xsl,
+            final String xslSystemId, final ResourcePack resources) throws Exception {
+        final TransformerFactory transformerFactory = createCompilingTransformerFactory(transletName, resources);
+        transformerFactory.setAttribute("use-classpath", Boolean.TRUE);
+
+        // XSLTC loads the translet using the context class loader, so temporarily add the translet directory to it
+        final Thread thread = Thread.currentThread();
+        final ClassLoader originalClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(new URLClassLoader(new URL[]{transletDirectory.toURI().toURL()},
+                XSLTUtilities.class.getClassLoader()));
+        try {
+            return transformerFactory.newTemplates(createXSLSource(xsl, xslSystemId));
+        } finally {
+            thread.setContextClassLoader(originalClassLoader);
+        }
+    }
+
+    private static TransformerFactory createCompilingTransformerFactory(final String transletName, final ResourcePack resources) {
+        final TransformerFactory transformerFactory = TransformerFactory.newInstance(XSLTC_TRANSFORMER_FACTORY,
+                XSLTUtilities.class.getClassLoader());
+        transformerFactory.setURIResolver(new XSLTResolver(resources));
+        transformerFactory.setAttribute("package-name", TRANSLET_PACKAGE);
+        transformerFactory.setAttribute("translet-name", transletName);
+        return transformerFactory;
+    }
+
+    private static Source createXSLSource(final String xsl, final String xslSystemId) throws TransformerException {
+        try {
+            final StreamSource xslStreamSource = new StreamSource(new ByteArrayInputStream(xsl.getBytes("UTF-8")));
+            xslStreamSource.setSystemId(xslSystemId);
+            return xslStreamSource;
+        } catch (final UnsupportedEncodingException ex) {
+            throw new TransformerException(ex);
+        }
     }
 
     /**
@@ -137,9 +606,29 @@ public class XSLTUtilities {
      */
     private static class XSLTResolver implements URIResolver {
         private static final Logger LOG = LoggerFactory.getLogger(XSLTResolver.class);
-        private Map<String, byte[]> resources;
+        private static final int MAX_CACHED_MODULES = 500;
+        /**
+         * The parsed resources, keyed by their name and content hash. This is shared by every resolver, so stylesheets with
+         * different entry points reuse the modules they have in common. Once full, the least recently used module is evicted, so
+         * modules from resources that have since changed don't stay in memory.
+         * <p/>
+         * The modules are held as buffers of SAX events rather than DOM trees, since stylesheets are compiled by multiple threads
+         * at once and reading a DOM isn't thread safe.
+         */
+        private static final Map<String, SAXEventBuffer> MODULES = Collections.synchronizedMap(new LinkedHashMap<String,
+                SAXEventBuffer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, SAXEventBuffer> eldest) {
+                return size() > MAX_CACHED_MODULES;
+            }
+        });
+        private ResourcePack resources;
 
         public XSLTResolver(final Map<String, byte[]> resources) {
+            this(ResourcePack.fromMap(resources));
+        }
+
+        public XSLTResolver(final ResourcePack resources) {
             this.resources = resources;
         }
 
@@ -155,8 +644,15 @@ public class XSLTUtilities {
                     fileLocation = href;
                 }
 
-                if (resources != null && resources.containsKey(fileLocation)) {
-                    final StreamSource source = new StreamSource(new ByteArrayInputStream(resources.get(fileLocation)));
+                if (resources != null && resources.contains(fileLocation)) {
+                    if (stylesheetModuleCacheEnabled) {
+                        final SAXEventBuffer module = getParsedModule(fileLocation);
+                        if (module != null) {
+                            return module.asSource(fileLocation);
+                        }
+                    }
+
+                    final StreamSource source = new StreamSource(resources.getInputStream(fileLocation));
                     source.setSystemId(fileLocation);
                     return source;
                 }
@@ -167,5 +663,28 @@ public class XSLTUtilities {
             System.out.println("Did not find resource. href: \"" + href + "\" base: \"" + base + "\"");
             throw new TransformerException("Could not find the resource " + href);
         }
+
+        /**
+         * Get the parsed tree of a resource from the module cache, parsing it if it hasn't been used before.
+         *
+         * @return The parsed resource, or null if it couldn't be parsed.
+         */
+        private SAXEventBuffer getParsedModule(final String fileLocation) {
+            final String key = fileLocation + "\u0000" + resources.getContentHash(fileLocation);
+            SAXEventBuffer module = MODULES.get(key);
+            if (module == null) {
+                try {
+                    final InputSource inputSource = new InputSource(resources.getInputStream(fileLocation));
+                    inputSource.setSystemId(fileLocation);
+                    module = SAXEventBuffer.parse(inputSource);
+                    MODULES.put(key, module);
+                } catch (final Exception ex) {
+                    LOG.debug("Unable to parse the resource " + fileLocation + " to be cached", ex);
+                    return null;
+                }
+            }
+
+            return module;
+        }
     }
 }
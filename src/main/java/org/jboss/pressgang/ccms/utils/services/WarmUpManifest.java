@@ -0,0 +1,132 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.jboss.pressgang.ccms.utils.common.DocBookUtilities;
+import org.jboss.pressgang.ccms.utils.common.XMLUtilities;
+import org.jboss.pressgang.ccms.utils.common.XMLValidator;
+import org.jboss.pressgang.ccms.utils.common.XSLTUtilities;
+import org.jboss.pressgang.ccms.utils.structures.ResourcePack;
+
+/**
+ * The list of artifacts (stylesheets, schemas, entity tables, etc...) that should be prepared by the {@link WarmUpService} when an
+ * application starts. Each artifact is prepared using the same caches that are used when processing a request, so a request
+ * that needs an artifact that is still being prepared will wait for it to finish instead of preparing it again.
+ */
+public class WarmUpManifest {
+    private final Map<String, Callable<?>> artifacts = new LinkedHashMap<String, Callable<?>>();
+
+    /**
+     * Adds a stylesheet to be compiled.
+     *
+     * @param xsl         The stylesheet.
+     * @param xslSystemId The system id of the stylesheet.
+     * @param resources   The resources that can be imported by the stylesheet.
+     * @return This manifest.
+     */
+    public WarmUpManifest addStylesheet(final String xsl, final String xslSystemId, final ResourcePack resources) {
+        return addArtifact("Stylesheet " + xslSystemId, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return XSLTUtilities.getTemplates(xsl, xslSystemId, resources);
+            }
+        });
+    }
+
+    /**
+     * Adds a XSD or RELAX NG schema to be compiled.
+     *
+     * @param method    The type of schema.
+     * @param fileName  The filename of the Schema data in the resource pack.
+     * @param resources The resource pack that holds the Schema and any files it includes.
+     * @return This manifest.
+     */
+    public WarmUpManifest addSchema(final XMLValidator.ValidationMethod method, final String fileName, final ResourcePack resources) {
+        return addArtifact("Schema " + fileName, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return XMLValidator.getSchema(method, fileName, resources);
+            }
+        });
+    }
+
+    /**
+     * Adds a DTD to be loaded. DTDs can't be cached once they have been parsed, so this only loads the parser and validator
+     * classes, by validating a document that only contains the root element.
+     *
+     * @param fileName    The filename of the DTD in the resource pack.
+     * @param rootEleName The name of the root element to validate.
+     * @param resources   The resource pack that holds the DTD and any files it includes.
+     * @return This manifest.
+     */
+    public WarmUpManifest addDTD(final String fileName, final String rootEleName, final ResourcePack resources) {
+        return addArtifact("DTD " + fileName, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return new XMLValidator(false).validate(XMLValidator.ValidationMethod.DTD, "<" + rootEleName + "/>", fileName, null,
+                        rootEleName, resources);
+            }
+        });
+    }
+
+    /**
+     * Adds the DocBook entity table and the XML parser factories, which are otherwise initialised by the first request.
+     *
+     * @return This manifest.
+     */
+    public WarmUpManifest addDocBookEntities() {
+        return addArtifact("DocBook Entities", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                XMLUtilities.convertStringToDocument("<section/>");
+                return DocBookUtilities.getDocBookEntitiesString().length();
+            }
+        });
+    }
+
+    /**
+     * Adds a custom artifact to be prepared.
+     *
+     * @param name     A unique name for the artifact.
+     * @param artifact The callable that prepares the artifact.
+     * @return This manifest.
+     */
+    public WarmUpManifest addArtifact(final String name, final Callable<?> artifact) {
+        if (name == null) throw new IllegalArgumentException("name cannot be null");
+        if (artifact == null) throw new IllegalArgumentException("artifact cannot be null");
+
+        artifacts.put(name, artifact);
+        return this;
+    }
+
+    public List<String> getArtifactNames() {
+        return Collections.unmodifiableList(new ArrayList<String>(artifacts.keySet()));
+    }
+
+    Map<String, Callable<?>> getArtifacts() {
+        return artifacts;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepares the artifacts listed in a {@link WarmUpManifest} in parallel on background threads, so that the first requests after
+ * an application starts don't have to wait for stylesheets and schemas to be compiled.
+ * <p/>
+ * Request processing code doesn't need to wait for the warm up to finish. The artifacts are prepared through the same caches
+ * that requests use, so a request will only block if the specific artifact it needs is still being prepared.
+ */
+public class WarmUpService {
+    private static final Logger LOG = LoggerFactory.getLogger(WarmUpService.class);
+
+    private final ExecutorService executor;
+    private final Map<String, Future<?>> artifacts = new LinkedHashMap<String, Future<?>>();
+    private final Map<String, Long> timings = new ConcurrentHashMap<String, Long>();
+    private final AtomicInteger completed = new AtomicInteger(0);
+    private final AtomicInteger failed = new AtomicInteger(0);
+    private final long startTime;
+    private volatile long endTime = -1;
+
+    /**
+     * Starts preparing the artifacts in a manifest, using one thread per available processor.
+     *
+     * @param manifest The artifacts to prepare.
+     * @return The service that is preparing the artifacts.
+     */
+    public static WarmUpService start(final WarmUpManifest manifest) {
+        return start(manifest, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Starts preparing the artifacts in a manifest.
+     *
+     * @param manifest   The artifacts to prepare.
+     * @param numThreads The number of background threads to use.
+     * @return The service that is preparing the artifacts.
+     */
+    public static WarmUpService start(final WarmUpManifest manifest, final int numThreads) {
+        if (manifest == null) throw new IllegalArgumentException("manifest cannot be null");
+        if (numThreads < 1) throw new IllegalArgumentException("numThreads must be greater than 0");
+
+        return new WarmUpService(manifest, numThreads);
+    }
+
+    private WarmUpService(final WarmUpManifest manifest, final int numThreads) {
+        final int total = manifest.getArtifacts().size();
+        startTime = System.currentTimeMillis();
+        if (total == 0) {
+            endTime = startTime;
+        }
+
+        executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                // Don't stop the JVM from exiting if the warm up is still running
+                final Thread thread = new Thread(runnable, "WarmUp-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+
+        for (final Map.Entry<String, Callable<?>> artifact : manifest.getArtifacts().entrySet()) {
+            final String name = artifact.getKey();
+            final Callable<?> callable = artifact.getValue();
+            artifacts.put(name, executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    final long start = System.currentTimeMillis();
+                    try {
+                        return callable.call();
+                    } catch (final Exception ex) {
+                        failed.incrementAndGet();
+                        LOG.warn("Unable to warm up " + name, ex);
+                        throw ex;
+                    } finally {
+                        final long time = System.currentTimeMillis() - start;
+                        timings.put(name, time);
+                        final int count = completed.incrementAndGet();
+                        LOG.info("Warmed up {} in {} ms ({}/" + total + ")", new Object[]{name, time, count});
+                        if (count == total) {
+                            endTime = System.currentTimeMillis();
+                            LOG.info("Finished warming up {} artifacts in {} ms", total, endTime - startTime);
+                        }
+                    }
+                }
+            }));
+        }
+
+        // No more artifacts will be added, so let the threads exit once they are done
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for a single artifact to be prepared.
+     *
+     * @param name The name of the artifact, as listed by {@link WarmUpManifest#getArtifactNames()}.
+     * @return True if the artifact was prepared successfully, or false if it failed, was cancelled or isn't in the manifest.
+     * @throws InterruptedException Thrown if the thread is interrupted while waiting.
+     */
+    public boolean await(final String name) throws InterruptedException {
+        final Future<?> artifact = artifacts.get(name);
+        if (artifact == null) return false;
+
+        try {
+            artifact.get();
+            return true;
+        } catch (ExecutionException e) {
+            return false;
+        } catch (CancellationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits for every artifact to be prepared.
+     *
+     * @return True if all the artifacts were prepared successfully, otherwise false.
+     * @throws InterruptedException Thrown if the thread is interrupted while waiting.
+     */
+    public boolean awaitAll() throws InterruptedException {
+        boolean success = true;
+        for (final String name : artifacts.keySet()) {
+            success = await(name) && success;
+        }
+        return success;
+    }
+
+    /**
+     * Stops preparing any artifacts that haven't finished yet. Any artifacts that are being prepared are interrupted, and waiting
+     * for an artifact that didn't finish will return false.
+     */
+    public void cancel() {
+        for (final Future<?> artifact : artifacts.values()) {
+            artifact.cancel(true);
+        }
+        executor.shutdownNow();
+    }
+
+    public int getTotalCount() {
+        return artifacts.size();
+    }
+
+    public int getCompletedCount() {
+        return completed.get();
+    }
+
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return True if every artifact has been prepared, or the warm up has been cancelled.
+     */
+    public boolean isDone() {
+        for (final Future<?> artifact : artifacts.values()) {
+            if (!artifact.isDone()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The time taken to prepare each artifact that has finished, in milliseconds.
+     */
+    public Map<String, Long> getTimings() {
+        return Collections.unmodifiableMap(timings);
+    }
+
+    /**
+     * @return The time taken to prepare all the artifacts in milliseconds, or the time spent so far if the warm up hasn't finished.
+     */
+    public long getTotalTime() {
+        return (endTime == -1 ? System.currentTimeMillis() : endTime) - startTime;
+    }
+}
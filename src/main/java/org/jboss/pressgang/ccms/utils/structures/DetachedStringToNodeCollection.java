@@ -0,0 +1,147 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.structures;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.pressgang.ccms.utils.common.XMLUtilities;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * A compact version of a {@link StringToNodeCollection} that refers to its nodes by their path in the document, instead of holding
+ * references to the nodes. This means the translation strings extracted from a document can be cached without keeping the document
+ * in memory, and can be bound to any structurally identical copy of the document later.
+ */
+public class DetachedStringToNodeCollection {
+    private final String translationString;
+    private final String documentHash;
+    /**
+     * The path to each node, for each of the node collections.
+     */
+    private final int[][][] nodePaths;
+
+    /**
+     * @param stringToNodeCollection The collection to detach from its document.
+     * @param documentHash           The hash of the document the nodes belong to, from {@link XMLUtilities#getDocumentHash(Document)}.
+     */
+    public DetachedStringToNodeCollection(final StringToNodeCollection stringToNodeCollection, final String documentHash) {
+        if (stringToNodeCollection == null) throw new IllegalArgumentException("stringToNodeCollection cannot be null");
+
+        translationString = stringToNodeCollection.getTranslationString();
+        this.documentHash = documentHash;
+
+        final List<ArrayList<Node>> nodeCollections = stringToNodeCollection.getNodeCollections();
+        nodePaths = new int[nodeCollections == null ? 0 : nodeCollections.size()][][];
+        for (int i = 0; i < nodePaths.length; i++) {
+            final List<Node> nodes = nodeCollections.get(i);
+            nodePaths[i] = new int[nodes.size()][];
+            for (int j = 0; j < nodes.size(); j++) {
+                nodePaths[i][j] = XMLUtilities.getNodePath(nodes.get(j));
+                if (nodePaths[i][j] == null) {
+                    throw new IllegalArgumentException("The nodes for \"" + translationString + "\" are not attached to a document");
+                }
+            }
+        }
+    }
+
+    /**
+     * Detach a list of collections that were extracted from a document.
+     *
+     * @param doc                     The document the collections were extracted from.
+     * @param stringToNodeCollections The collections to detach.
+     * @return The detached collections, in the same order.
+     */
+    public static List<DetachedStringToNodeCollection> detach(final Document doc,
+            final List<StringToNodeCollection> stringToNodeCollections) {
+        final String documentHash = XMLUtilities.getDocumentHash(doc);
+        final List<DetachedStringToNodeCollection> retValue = new ArrayList<DetachedStringToNodeCollection>(
+                stringToNodeCollections.size());
+        for (final StringToNodeCollection stringToNodeCollection : stringToNodeCollections) {
+            retValue.add(new DetachedStringToNodeCollection(stringToNodeCollection, documentHash));
+        }
+
+        return retValue;
+    }
+
+    /**
+     * Bind a list of detached collections to a document, after checking that the document is the same as the one they were
+     * detached from.
+     *
+     * @param doc                             The document to bind the collections to.
+     * @param detachedStringToNodeCollections The collections to bind.
+     * @return The collections bound to the document, in the same order.
+     * @throws IllegalArgumentException Thrown if the document is different to the one the collections were detached from.
+     */
+    public static List<StringToNodeCollection> bind(final Document doc,
+            final List<DetachedStringToNodeCollection> detachedStringToNodeCollections) {
+        final String documentHash = XMLUtilities.getDocumentHash(doc);
+        final List<StringToNodeCollection> retValue = new ArrayList<StringToNodeCollection>(detachedStringToNodeCollections.size());
+        for (final DetachedStringToNodeCollection detachedStringToNodeCollection : detachedStringToNodeCollections) {
+            if (!documentHash.equals(detachedStringToNodeCollection.getDocumentHash())) {
+                throw new IllegalArgumentException("The document is different to the one that \"" + detachedStringToNodeCollection
+                        .getTranslationString() + "\" was detached from");
+            }
+            retValue.add(detachedStringToNodeCollection.bind(doc));
+        }
+
+        return retValue;
+    }
+
+    public String getTranslationString() {
+        return translationString;
+    }
+
+    /**
+     * @return The hash of the document that the collection was detached from.
+     */
+    public String getDocumentHash() {
+        return documentHash;
+    }
+
+    /**
+     * Bind the collection to the nodes at the same paths in a document. Each node is found by walking down from the root of the
+     * document, so the cost only depends on the depth of the node. The document isn't checked against the document hash, as that
+     * requires the whole document to be read.
+     *
+     * @param doc A document with the same structure as the one the collection was detached from.
+     * @return A collection that refers to the nodes in the document.
+     * @throws IllegalArgumentException Thrown if the document doesn't contain a node at one of the paths.
+     */
+    public StringToNodeCollection bind(final Document doc) {
+        if (doc == null) throw new IllegalArgumentException("doc cannot be null");
+
+        final StringToNodeCollection retValue = new StringToNodeCollection(translationString);
+        for (final int[][] paths : nodePaths) {
+            final ArrayList<Node> nodes = new ArrayList<Node>(paths.length);
+            for (final int[] path : paths) {
+                final Node node = XMLUtilities.getNodeByPath(doc, path);
+                if (node == null) {
+                    throw new IllegalArgumentException("The document doesn't contain the nodes for \"" + translationString + "\"");
+                }
+                nodes.add(node);
+            }
+            retValue.addNodeCollection(nodes);
+        }
+
+        return retValue;
+    }
+}
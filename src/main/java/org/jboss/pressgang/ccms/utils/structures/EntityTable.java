@@ -0,0 +1,237 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact, read-only table of XML entity names and their values. The names are held in a sorted array so lookups are a binary
+ * search, and the original declaration order is kept so that the entity declarations can be generated when they are needed.
+ */
+public class EntityTable {
+    private final String[] names;
+    private final String[] values;
+    /**
+     * The index into the sorted arrays of each entity, in the order they were declared.
+     */
+    private final int[] declarationOrder;
+
+    private EntityTable(final String[] names, final String[] values, final int[] declarationOrder) {
+        this.names = names;
+        this.values = values;
+        this.declarationOrder = declarationOrder;
+    }
+
+    /**
+     * Loads an entity table, where each line holds the entity name, the position it is declared in and the entity value, separated
+     * by tabs. Empty lines and lines starting with a # are ignored. Tables that are already sorted by name can be loaded without
+     * having to be sorted again.
+     *
+     * @param inputStream The stream to read the table from. The stream is closed once the table has been read.
+     * @return The entity table.
+     * @throws IOException Thrown if the stream can't be read or contains an invalid line.
+     */
+    public static EntityTable load(final InputStream inputStream) throws IOException {
+        final List<String> names = new ArrayList<String>();
+        final List<String> values = new ArrayList<String>();
+        final List<Integer> positions = new ArrayList<Integer>();
+        boolean sorted = true;
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() == 0 || line.startsWith("#")) continue;
+
+                final int nameEnd = line.indexOf('\t');
+                final int positionEnd = nameEnd < 1 ? -1 : line.indexOf('\t', nameEnd + 1);
+                if (positionEnd == -1) {
+                    throw new IOException("Invalid entity definition: " + line);
+                }
+
+                final String name = line.substring(0, nameEnd);
+                if (!names.isEmpty() && names.get(names.size() - 1).compareTo(name) >= 0) {
+                    sorted = false;
+                }
+
+                try {
+                    positions.add(Integer.parseInt(line.substring(nameEnd + 1, positionEnd)));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid entity definition: " + line);
+                }
+                names.add(name);
+                values.add(line.substring(positionEnd + 1));
+            }
+        } finally {
+            reader.close();
+        }
+
+        final int size = names.size();
+        final Integer[] sortedIndexes = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            sortedIndexes[i] = i;
+        }
+        if (!sorted) {
+            Arrays.sort(sortedIndexes, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer index1, final Integer index2) {
+                    return names.get(index1).compareTo(names.get(index2));
+                }
+            });
+        }
+
+        final String[] sortedNames = new String[size];
+        final String[] sortedValues = new String[size];
+        final int[] declarationOrder = new int[size];
+        final boolean[] declared = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            final int index = sortedIndexes[i];
+            final int position = positions.get(index);
+            if (position < 0 || position >= size || declared[position] || (i > 0 && sortedNames[i - 1].equals(names.get(index)))) {
+                throw new IOException("The entity " + names.get(index) + " has a duplicate name or an invalid position");
+            }
+
+            sortedNames[i] = names.get(index);
+            sortedValues[i] = values.get(index);
+            declarationOrder[position] = i;
+            declared[position] = true;
+        }
+
+        return new EntityTable(sortedNames, sortedValues, declarationOrder);
+    }
+
+    private int indexOf(final String name) {
+        return name == null ? -1 : Arrays.binarySearch(names, name);
+    }
+
+    public boolean contains(final String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * @param name The name of the entity.
+     * @return The value of the entity, or null if the entity isn't in the table.
+     */
+    public String get(final String name) {
+        final int index = indexOf(name);
+        return index < 0 ? null : values[index];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Generates the entity declarations for every entity in the table, in the order they were declared.
+     *
+     * @return The entity declarations, separated by new lines.
+     */
+    public String toDeclarations() {
+        final StringBuilder declarations = new StringBuilder(names.length * 32);
+        for (int i = 0; i < declarationOrder.length; i++) {
+            final int index = declarationOrder[i];
+            if (i != 0) {
+                declarations.append("\n");
+            }
+            declarations.append("<!ENTITY ").append(names[index]).append(" \"").append(values[index]).append("\">");
+        }
+
+        return declarations.toString();
+    }
+
+    /**
+     * Get a read-only Map view of the table, that iterates over the entities in the order they were declared.
+     *
+     * @return A Map view of the table.
+     */
+    public Map<String, String> asMap() {
+        return new AbstractMap<String, String>() {
+            @Override
+            public boolean containsKey(final Object key) {
+                return key instanceof String && contains((String) key);
+            }
+
+            @Override
+            public String get(final Object key) {
+                return key instanceof String ? EntityTable.this.get((String) key) : null;
+            }
+
+            @Override
+            public int size() {
+                return names.length;
+            }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return new AbstractSet<Entry<String, String>>() {
+                    @Override
+                    public Iterator<Entry<String, String>> iterator() {
+                        return new Iterator<Entry<String, String>>() {
+                            private int position = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return position < declarationOrder.length;
+                            }
+
+                            @Override
+                            public Entry<String, String> next() {
+                                if (!hasNext()) throw new NoSuchElementException();
+
+                                final int index = declarationOrder[position++];
+                                return new SimpleImmutableEntry<String, String>(names[index], values[index]);
+                            }
+
+                            @Override
+                            public void remove() {
+                                throw new UnsupportedOperationException();
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return names.length;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return The names of the entities in the table, in alphabetical order.
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+}
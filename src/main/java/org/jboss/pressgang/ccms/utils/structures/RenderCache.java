@@ -0,0 +1,360 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.pressgang.ccms.utils.common.FileUtilities;
+import org.jboss.pressgang.ccms.utils.common.HashUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of rendered (transformed) output, keyed by a hash of the input XML, the stylesheet, the resources it imports and the
+ * stylesheet parameters. The in memory tier is limited by the total size of the cached output, and evicts the least recently used
+ * output first. An optional disk tier can be used to keep output between restarts, or to hold output that has been evicted from
+ * memory. The disk tier is also limited by size, and evicts the least recently used files first.
+ */
+public class RenderCache {
+    private static final Logger LOG = LoggerFactory.getLogger(RenderCache.class);
+    private static final long DEFAULT_MAX_DISK_SIZE = 512L * 1024 * 1024;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final long maxMemorySize;
+    private final File diskDirectory;
+    private final long maxDiskSize;
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>(16, 0.75f, true);
+    private long memorySize = 0;
+    /**
+     * The size of each file in the disk tier, in least recently used order.
+     */
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long diskSize = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxMemorySize The maximum approximate size, in bytes, of the output to hold in memory.
+     */
+    public RenderCache(final long maxMemorySize) {
+        this(maxMemorySize, null);
+    }
+
+    /**
+     * @param maxMemorySize The maximum approximate size, in bytes, of the output to hold in memory.
+     * @param diskDirectory The directory to store up to 512MB of rendered output in, or null if output should only be held in memory.
+     */
+    public RenderCache(final long maxMemorySize, final File diskDirectory) {
+        this(maxMemorySize, diskDirectory, DEFAULT_MAX_DISK_SIZE);
+    }
+
+    /**
+     * @param maxMemorySize The maximum approximate size, in bytes, of the output to hold in memory.
+     * @param diskDirectory The directory to store rendered output in, or null if output should only be held in memory.
+     * @param maxDiskSize   The maximum size, in bytes, of the output to store in the disk directory.
+     */
+    public RenderCache(final long maxMemorySize, final File diskDirectory, final long maxDiskSize) {
+        if (maxMemorySize < 0) throw new IllegalArgumentException("maxMemorySize cannot be negative");
+        if (maxDiskSize < 0) throw new IllegalArgumentException("maxDiskSize cannot be negative");
+        if (diskDirectory != null && !diskDirectory.exists() && !diskDirectory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create the render cache directory " + diskDirectory.getAbsolutePath());
+        }
+
+        this.maxMemorySize = maxMemorySize;
+        this.diskDirectory = diskDirectory;
+        this.maxDiskSize = maxDiskSize;
+        if (diskDirectory != null) {
+            loadDiskEntries();
+        }
+    }
+
+    /**
+     * Finds the output that was saved to the disk tier before the cache was created, treating the least recently modified files as
+     * the least recently used, and removes any files that were left over from interrupted writes.
+     */
+    private void loadDiskEntries() {
+        final File[] files = diskDirectory.listFiles();
+        if (files == null) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File o1, final File o2) {
+                return Long.valueOf(o1.lastModified()).compareTo(o2.lastModified());
+            }
+        });
+
+        synchronized (diskEntries) {
+            for (final File file : files) {
+                if (file.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                    file.delete();
+                } else if (file.isFile()) {
+                    addToDisk(file.getName(), file.length());
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the cache key for a transform. The parameters are sorted, so the order they were added in doesn't matter.
+     *
+     * @param xml              The XML that is transformed.
+     * @param xsl              The stylesheet used to transform the XML.
+     * @param xslSystemId      The system id of the stylesheet.
+     * @param resources        The resources that the stylesheet imports.
+     * @param globalParameters The parameters passed to the stylesheet, or null if there are none.
+     * @return The key for the rendered output.
+     */
+    public static String createKey(final String xml, final String xsl, final String xslSystemId, final ResourcePack resources,
+            final Map<String, String> globalParameters) {
+        final StringBuilder key = new StringBuilder();
+        appendKeyField(key, HashUtilities.generateSHA256(xml));
+        appendKeyField(key, HashUtilities.generateSHA256(xsl));
+        appendKeyField(key, xslSystemId);
+        appendKeyField(key, resources == null ? null : resources.getContentHash());
+        if (globalParameters != null) {
+            for (final Map.Entry<String, String> parameter : new TreeMap<String, String>(globalParameters).entrySet()) {
+                appendKeyField(key, parameter.getKey());
+                appendKeyField(key, parameter.getValue());
+            }
+        }
+
+        return HashUtilities.generateSHA256(key.toString());
+    }
+
+    /**
+     * Adds a value to a key, prefixed by its length so that the boundaries between values can't be confused.
+     */
+    private static void appendKeyField(final StringBuilder key, final String value) {
+        if (value == null) {
+            key.append("-1:");
+        } else {
+            key.append(value.length()).append(':').append(value);
+        }
+    }
+
+    /**
+     * Get the rendered output for a key, checking the disk tier if the output isn't held in memory.
+     *
+     * @param key The key created by {@link #createKey(String, String, String, ResourcePack, java.util.Map)}.
+     * @return The rendered output, or null if it hasn't been cached.
+     */
+    public String get(final String key) {
+        String output;
+        synchronized (entries) {
+            output = entries.get(key);
+        }
+
+        if (output == null && diskDirectory != null) {
+            output = readFromDisk(key);
+            if (output != null) {
+                addToMemory(key, output);
+                synchronized (diskEntries) {
+                    diskEntries.get(key);
+                }
+            }
+        }
+
+        if (output == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return output;
+    }
+
+    /**
+     * Adds rendered output to the cache.
+     *
+     * @param key    The key created by {@link #createKey(String, String, String, ResourcePack, java.util.Map)}.
+     * @param output The rendered output.
+     */
+    public void put(final String key, final String output) {
+        if (key == null || output == null) return;
+
+        addToMemory(key, output);
+
+        if (diskDirectory != null) {
+            // Write to a temp file first, so other readers never see a partially written file
+            final File file = new File(diskDirectory, key);
+            final File tempFile = new File(diskDirectory, key + "." + Thread.currentThread().getId() + TEMP_FILE_SUFFIX);
+            try {
+                FileUtilities.saveFile(tempFile, output, "UTF-8");
+                final long length = tempFile.length();
+                synchronized (diskEntries) {
+                    if (tempFile.renameTo(file)) {
+                        addToDisk(key, length);
+                    } else {
+                        tempFile.delete();
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("Unable to save the rendered output to " + file.getAbsolutePath(), e);
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads rendered output from the disk tier. The file may be deleted or replaced at any time, so any failure to read it is treated
+     * as a miss. An empty file is also treated as a miss, since it can't be told apart from a file that was only partially read.
+     *
+     * @return The rendered output, or null if it couldn't be read.
+     */
+    private String readFromDisk(final String key) {
+        final File file = new File(diskDirectory, key);
+        final InputStream inputStream;
+        try {
+            inputStream = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+
+        try {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+
+            return output.size() == 0 ? null : output.toString("UTF-8");
+        } catch (IOException e) {
+            LOG.warn("Unable to read the rendered output from " + file.getAbsolutePath(), e);
+            return null;
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                LOG.error("Failed to close the FileInputStream", e);
+            }
+        }
+    }
+
+    private void addToMemory(final String key, final String output) {
+        final long size = getSize(output);
+        if (size > maxMemorySize) return;
+
+        synchronized (entries) {
+            final String existing = entries.put(key, output);
+            if (existing != null) {
+                memorySize -= getSize(existing);
+            }
+            memorySize += size;
+
+            final Iterator<String> iterator = entries.values().iterator();
+            while (memorySize > maxMemorySize && iterator.hasNext()) {
+                memorySize -= getSize(iterator.next());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Records a file that has been saved to the disk tier, and deletes the least recently used files if the disk tier is full. The
+     * caller must hold the lock on {@link #diskEntries}.
+     */
+    private void addToDisk(final String key, final long length) {
+        final Long existing = diskEntries.put(key, length);
+        if (existing != null) {
+            diskSize -= existing;
+        }
+        diskSize += length;
+
+        final Iterator<Map.Entry<String, Long>> iterator = diskEntries.entrySet().iterator();
+        while (diskSize > maxDiskSize && iterator.hasNext()) {
+            final Map.Entry<String, Long> entry = iterator.next();
+            diskSize -= entry.getValue();
+            iterator.remove();
+            new File(diskDirectory, entry.getKey()).delete();
+        }
+    }
+
+    private static long getSize(final String output) {
+        return output.length() * 2L;
+    }
+
+    /**
+     * Removes all the rendered output from both the memory and disk tiers.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            memorySize = 0;
+        }
+
+        if (diskDirectory != null) {
+            synchronized (diskEntries) {
+                diskEntries.clear();
+                diskSize = 0;
+                FileUtilities.deleteDirContents(diskDirectory);
+            }
+        }
+    }
+
+    /**
+     * @return The approximate size, in bytes, of the output held in memory.
+     */
+    public long getMemorySize() {
+        synchronized (entries) {
+            return memorySize;
+        }
+    }
+
+    public long getMaxMemorySize() {
+        return maxMemorySize;
+    }
+
+    public File getDiskDirectory() {
+        return diskDirectory;
+    }
+
+    /**
+     * @return The size, in bytes, of the output stored in the disk tier.
+     */
+    public long getDiskSize() {
+        synchronized (diskEntries) {
+            return diskSize;
+        }
+    }
+
+    public long getMaxDiskSize() {
+        return maxDiskSize;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+}
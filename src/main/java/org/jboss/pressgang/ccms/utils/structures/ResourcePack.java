@@ -0,0 +1,416 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.structures;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.InvalidMarkException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * A read-only collection of named resources (DTDs, Schemas, XSL files, etc...) that can be shared between resolvers. Packs that are
+ * loaded from disk are memory-mapped once and any resources handed out are backed directly by the mapped file, so no copies of the
+ * data are made on the heap.
+ * <p/>
+ * The on disk format is as follows (all numbers are big-endian):
+ * <pre>
+ * int     magic ("PGRP")
+ * int     format version
+ * int     number of entries
+ * entry[] index, where each entry is: a short name length, the UTF-8 name, a long data offset and an int data length
+ * byte[]  data
+ * </pre>
+ */
+public class ResourcePack {
+    private static final int MAGIC = 0x50475250;
+    private static final int VERSION = 1;
+    private static final Map<String, ResourcePack> OPEN_PACKS = new ConcurrentHashMap<String, ResourcePack>();
+    /**
+     * The hashes of the arrays that in memory packs have been created from, so packs that are recreated from the same arrays
+     * don't need to hash them again.
+     */
+    private static final Map<byte[], String> ARRAY_HASHES = Collections.synchronizedMap(new WeakHashMap<byte[], String>());
+
+    private final Map<String, ByteBuffer> resources;
+    private final Map<String, byte[]> arrays;
+    private final long lastModified;
+    private final long length;
+    private final Map<String, String> resourceHashes = new ConcurrentHashMap<String, String>();
+    private volatile String contentHash;
+
+    protected ResourcePack(final Map<String, ByteBuffer> resources) {
+        this(resources, null, -1, -1);
+    }
+
+    private ResourcePack(final Map<String, ByteBuffer> resources, final Map<String, byte[]> arrays, final long lastModified,
+            final long length) {
+        this.resources = Collections.unmodifiableMap(resources);
+        this.arrays = arrays;
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    /**
+     * Creates a pack that is backed by a set of in memory files. The byte arrays are not copied, so they shouldn't be modified after
+     * the pack has been created. The content hash of each array is remembered, so it is only calculated once no matter how many packs
+     * are created from the array.
+     *
+     * @param files The files to include in the pack, mapped by their name.
+     * @return A new pack containing the files.
+     */
+    public static ResourcePack fromMap(final Map<String, byte[]> files) {
+        final Map<String, ByteBuffer> resources = new LinkedHashMap<String, ByteBuffer>();
+        final Map<String, byte[]> arrays = new HashMap<String, byte[]>();
+        if (files != null) {
+            for (final Map.Entry<String, byte[]> file : files.entrySet()) {
+                if (file.getValue() != null) {
+                    resources.put(file.getKey(), ByteBuffer.wrap(file.getValue()).asReadOnlyBuffer());
+                    arrays.put(file.getKey(), file.getValue());
+                }
+            }
+        }
+
+        return new ResourcePack(resources, arrays, -1, -1);
+    }
+
+    /**
+     * Opens a resource pack that has been written to disk. The file is only mapped into memory the first time it is opened, after
+     * which the same pack instance is returned until the file is modified on disk.
+     *
+     * @param file The resource pack file.
+     * @return The resource pack for the file.
+     * @throws IOException Thrown if the file can't be read or isn't a valid resource pack.
+     */
+    public static ResourcePack open(final File file) throws IOException {
+        final String key = file.getCanonicalPath();
+        ResourcePack pack = OPEN_PACKS.get(key);
+        if (pack == null || !pack.isCurrent(file)) {
+            synchronized (OPEN_PACKS) {
+                pack = OPEN_PACKS.get(key);
+                if (pack == null || !pack.isCurrent(file)) {
+                    // Read the file details before mapping it, so a concurrent update will cause it to be mapped again next time
+                    final long lastModified = file.lastModified();
+                    final long length = file.length();
+                    pack = new ResourcePack(mapResources(file), null, lastModified, length);
+                    OPEN_PACKS.put(key, pack);
+                }
+            }
+        }
+
+        return pack;
+    }
+
+    /**
+     * Writes a set of files to disk in the resource pack format. The pack is written to a temporary file that then replaces the
+     * existing file, so any pack that is currently open from the file remains valid.
+     *
+     * @param file  The file to write the pack to.
+     * @param files The files to include in the pack, mapped by their name.
+     * @throws IOException Thrown if the pack can't be written.
+     */
+    public static void write(final File file, final Map<String, byte[]> files) throws IOException {
+        final List<Pair<byte[], byte[]>> entries = new ArrayList<Pair<byte[], byte[]>>();
+        long indexLength = 0;
+        for (final Map.Entry<String, byte[]> entry : files.entrySet()) {
+            if (entry.getValue() == null) continue;
+
+            final byte[] name = entry.getKey().getBytes("UTF-8");
+            if (name.length > Short.MAX_VALUE) {
+                throw new IOException("The resource name \"" + entry.getKey() + "\" is too long");
+            }
+            entries.add(new Pair<byte[], byte[]>(name, entry.getValue()));
+            indexLength += 2 + name.length + 8 + 4;
+        }
+
+        final File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        boolean written = false;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+
+            long offset = 12 + indexLength;
+            for (final Pair<byte[], byte[]> entry : entries) {
+                out.writeShort(entry.getFirst().length);
+                out.write(entry.getFirst());
+                out.writeLong(offset);
+                out.writeInt(entry.getSecond().length);
+                offset += entry.getSecond().length;
+            }
+
+            for (final Pair<byte[], byte[]> entry : entries) {
+                out.write(entry.getSecond());
+            }
+            out.close();
+
+            // Some platforms won't rename over an existing file, so try removing it first in that case
+            if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+                throw new IOException("Unable to replace the resource pack " + file.getName());
+            }
+            written = true;
+        } finally {
+            out.close();
+            if (!written) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private boolean isCurrent(final File file) {
+        return lastModified == file.lastModified() && length == file.length();
+    }
+
+    private static Map<String, ByteBuffer> mapResources(final File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The resource pack " + file.getName() + " is too large to be mapped");
+            }
+
+            // The mapping remains valid once the channel has been closed
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a resource pack");
+            }
+            final int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported resource pack version " + version);
+            }
+
+            final int count = buffer.getInt();
+            final Map<String, ByteBuffer> resources = new LinkedHashMap<String, ByteBuffer>();
+            if (count < 0) {
+                throw new IOException("The resource pack " + file.getName() + " is corrupt");
+            }
+            for (int i = 0; i < count; i++) {
+                final short nameLength = buffer.getShort();
+                if (nameLength < 0) {
+                    throw new IOException("The resource pack " + file.getName() + " is corrupt");
+                }
+                final byte[] name = new byte[nameLength];
+                buffer.get(name);
+                final long offset = buffer.getLong();
+                final int length = buffer.getInt();
+                if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+                    throw new IOException("The resource pack " + file.getName() + " is corrupt");
+                }
+
+                final ByteBuffer resource = buffer.duplicate();
+                resource.position((int) offset);
+                resource.limit((int) offset + length);
+                resources.put(new String(name, "UTF-8"), resource.slice().asReadOnlyBuffer());
+            }
+
+            return resources;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The resource pack " + file.getName() + " is corrupt");
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public boolean contains(final String name) {
+        return name != null && resources.containsKey(name);
+    }
+
+    public Set<String> getNames() {
+        return resources.keySet();
+    }
+
+    public int size() {
+        return resources.size();
+    }
+
+    /**
+     * Get a SHA-256 hash that identifies the names and content of all the resources in the pack. The hash is built from the hash of
+     * each resource, and is only calculated the first time it is requested.
+     *
+     * @return The hex encoded hash of the pack.
+     */
+    public String getContentHash() {
+        if (contentHash == null) {
+            try {
+                final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+                for (final String name : new TreeSet<String>(resources.keySet())) {
+                    messageDigest.update(name.getBytes("UTF-8"));
+                    messageDigest.update((byte) 0);
+                    messageDigest.update(getContentHash(name).getBytes("UTF-8"));
+                    messageDigest.update((byte) 0);
+                }
+                contentHash = new String(Hex.encodeHex(messageDigest.digest()));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return contentHash;
+    }
+
+    /**
+     * Get a SHA-256 hash of the content of a single resource. The hash is only calculated the first time it is requested.
+     *
+     * @param name The name of the resource.
+     * @return The hex encoded hash of the resource, or null if the resource doesn't exist.
+     */
+    public String getContentHash(final String name) {
+        final ByteBuffer buffer = getBuffer(name);
+        if (buffer == null) return null;
+
+        String hash = resourceHashes.get(name);
+        if (hash == null) {
+            final byte[] array = arrays == null ? null : arrays.get(name);
+            hash = array == null ? null : ARRAY_HASHES.get(array);
+            if (hash == null) {
+                try {
+                    final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+                    messageDigest.update(buffer);
+                    hash = new String(Hex.encodeHex(messageDigest.digest()));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+
+                if (array != null) {
+                    ARRAY_HASHES.put(array, hash);
+                }
+            }
+            resourceHashes.put(name, hash);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Get the contents of a resource. The returned buffer is an independent read-only view of the data, so it can be freely
+     * consumed by the caller.
+     *
+     * @param name The name of the resource.
+     * @return A buffer containing the resource data, or null if the resource doesn't exist.
+     */
+    public ByteBuffer getBuffer(final String name) {
+        final ByteBuffer buffer = name == null ? null : resources.get(name);
+        return buffer == null ? null : buffer.duplicate();
+    }
+
+    /**
+     * Get a stream to read the contents of a resource, without copying the data.
+     *
+     * @param name The name of the resource.
+     * @return A stream to read the resource, or null if the resource doesn't exist.
+     */
+    public InputStream getInputStream(final String name) {
+        final ByteBuffer buffer = getBuffer(name);
+        return buffer == null ? null : new ByteBufferInputStream(buffer);
+    }
+
+    /**
+     * Get a copy of the contents of a resource.
+     *
+     * @param name The name of the resource.
+     * @return The resource data, or null if the resource doesn't exist.
+     */
+    public byte[] getBytes(final String name) {
+        final ByteBuffer buffer = getBuffer(name);
+        if (buffer == null) return null;
+
+        final byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * An InputStream that reads directly from a ByteBuffer.
+     */
+    public static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        public ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int off, final int len) throws IOException {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+
+            final int count = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(final int readLimit) {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            try {
+                buffer.reset();
+            } catch (InvalidMarkException e) {
+                throw new IOException("The stream has not been marked");
+            }
+        }
+    }
+}
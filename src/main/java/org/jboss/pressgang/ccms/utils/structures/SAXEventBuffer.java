@@ -0,0 +1,315 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.structures;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * The SAX events of a parsed XML document, which can be replayed any number of times without parsing the document again. Once
+ * created the buffer is never modified, so it can be replayed by multiple threads at the same time.
+ * <p/>
+ * Only the events that are needed to rebuild the document's elements and content are kept, so comments, the DTD and the line
+ * numbers of the events are lost.
+ */
+public class SAXEventBuffer {
+    private static final String NAMESPACES_FEATURE = "http://xml.org/sax/features/namespaces";
+    private static final String NAMESPACE_PREFIXES_FEATURE = "http://xml.org/sax/features/namespace-prefixes";
+
+    private final List<Event> events;
+
+    private SAXEventBuffer(final List<Event> events) {
+        this.events = events;
+    }
+
+    /**
+     * Parses a document into a buffer of SAX events.
+     *
+     * @param inputSource The document to parse.
+     * @return The SAX events of the document.
+     * @throws SAXException Thrown if the document isn't well formed.
+     * @throws IOException  Thrown if the document can't be read.
+     */
+    public static SAXEventBuffer parse(final InputSource inputSource) throws SAXException, IOException {
+        if (inputSource == null) throw new IllegalArgumentException("inputSource cannot be null");
+
+        try {
+            final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+            parserFactory.setNamespaceAware(true);
+            // Keep the namespace declarations as attributes as well, in case a reader of the buffer needs them
+            parserFactory.setFeature(NAMESPACE_PREFIXES_FEATURE, true);
+
+            final Recorder recorder = new Recorder();
+            final XMLReader reader = parserFactory.newSAXParser().getXMLReader();
+            reader.setContentHandler(recorder);
+            reader.parse(inputSource);
+
+            return new SAXEventBuffer(recorder.events);
+        } catch (final SAXException ex) {
+            throw ex;
+        } catch (final IOException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            throw new SAXException(ex);
+        }
+    }
+
+    /**
+     * Sends the events to a handler.
+     *
+     * @param handler                 The handler to send the events to.
+     * @param systemId                The system id to report for the document, or null if it isn't known.
+     * @param includeNamespacePrefixes true if namespace declarations should also be reported as attributes, otherwise false.
+     * @throws SAXException Thrown if the handler fails.
+     */
+    public void replay(final ContentHandler handler, final String systemId, final boolean includeNamespacePrefixes)
+            throws SAXException {
+        if (handler == null) throw new IllegalArgumentException("handler cannot be null");
+
+        final LocatorImpl locator = new LocatorImpl();
+        locator.setSystemId(systemId);
+        locator.setLineNumber(-1);
+        locator.setColumnNumber(-1);
+        handler.setDocumentLocator(locator);
+        handler.startDocument();
+        for (final Event event : events) {
+            event.replay(handler, includeNamespacePrefixes);
+        }
+        handler.endDocument();
+    }
+
+    /**
+     * Get a Source that replays the events, so the document can be passed to a transformer without being parsed again.
+     *
+     * @param systemId The system id of the document.
+     * @return A source that replays the events.
+     */
+    public SAXSource asSource(final String systemId) {
+        return new SAXSource(new ReplayReader(), new InputSource(systemId));
+    }
+
+    private static abstract class Event {
+        abstract void replay(ContentHandler handler, boolean includeNamespacePrefixes) throws SAXException;
+    }
+
+    /**
+     * Records the events from a parser.
+     */
+    private static class Recorder extends DefaultHandler {
+        private final List<Event> events = new ArrayList<Event>();
+
+        @Override
+        public void startPrefixMapping(final String prefix, final String uri) {
+            events.add(new Event() {
+                @Override
+                void replay(final ContentHandler handler, final boolean includeNamespacePrefixes) throws SAXException {
+                    handler.startPrefixMapping(prefix, uri);
+                }
+            });
+        }
+
+        @Override
+        public void endPrefixMapping(final String prefix) {
+            events.add(new Event() {
+                @Override
+                void replay(final ContentHandler handler, final boolean includeNamespacePrefixes) throws SAXException {
+                    handler.endPrefixMapping(prefix);
+                }
+            });
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+            final AttributesImpl allAttributes = new AttributesImpl(attributes);
+            final AttributesImpl elementAttributes = new AttributesImpl();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final String name = attributes.getQName(i);
+                if (!name.equals("xmlns") && !name.startsWith("xmlns:")) {
+                    elementAttributes.addAttribute(attributes.getURI(i), attributes.getLocalName(i), name, attributes.getType(i),
+                            attributes.getValue(i));
+                }
+            }
+
+            events.add(new Event() {
+                @Override
+                void replay(final ContentHandler handler, final boolean includeNamespacePrefixes) throws SAXException {
+                    // The handler gets its own copy, so it can't change the buffer
+                    handler.startElement(uri, localName, qName, new AttributesImpl(includeNamespacePrefixes ? allAttributes :
+                            elementAttributes));
+                }
+            });
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            events.add(new Event() {
+                @Override
+                void replay(final ContentHandler handler, final boolean includeNamespacePrefixes) throws SAXException {
+                    handler.endElement(uri, localName, qName);
+                }
+            });
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+            final String text = new String(ch, start, length);
+            events.add(new Event() {
+                @Override
+                void replay(final ContentHandler handler, final boolean includeNamespacePrefixes) throws SAXException {
+                    handler.characters(text.toCharArray(), 0, text.length());
+                }
+            });
+        }
+
+        @Override
+        public void ignorableWhitespace(final char[] ch, final int start, final int length) {
+            final String text = new String(ch, start, length);
+            events.add(new Event() {
+                @Override
+                void replay(final ContentHandler handler, final boolean includeNamespacePrefixes) throws SAXException {
+                    handler.ignorableWhitespace(text.toCharArray(), 0, text.length());
+                }
+            });
+        }
+
+        @Override
+        public void processingInstruction(final String target, final String data) {
+            events.add(new Event() {
+                @Override
+                void replay(final ContentHandler handler, final boolean includeNamespacePrefixes) throws SAXException {
+                    handler.processingInstruction(target, data);
+                }
+            });
+        }
+    }
+
+    /**
+     * An XMLReader that replays the buffer instead of parsing the input it is given.
+     */
+    private class ReplayReader implements XMLReader {
+        private final Map<String, Boolean> features = new HashMap<String, Boolean>();
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+        private ContentHandler contentHandler;
+        private DTDHandler dtdHandler;
+        private EntityResolver entityResolver;
+        private ErrorHandler errorHandler;
+
+        ReplayReader() {
+            features.put(NAMESPACES_FEATURE, true);
+            features.put(NAMESPACE_PREFIXES_FEATURE, false);
+        }
+
+        @Override
+        public boolean getFeature(final String name) {
+            final Boolean value = features.get(name);
+            return value != null && value;
+        }
+
+        @Override
+        public void setFeature(final String name, final boolean value) {
+            features.put(name, value);
+        }
+
+        @Override
+        public Object getProperty(final String name) {
+            return properties.get(name);
+        }
+
+        /**
+         * Properties (such as a lexical handler or parser limits) are accepted but have no effect, since the document has already
+         * been parsed and there are no comment or DTD events to report.
+         */
+        @Override
+        public void setProperty(final String name, final Object value) {
+            properties.put(name, value);
+        }
+
+        @Override
+        public void setEntityResolver(final EntityResolver resolver) {
+            entityResolver = resolver;
+        }
+
+        @Override
+        public EntityResolver getEntityResolver() {
+            return entityResolver;
+        }
+
+        @Override
+        public void setDTDHandler(final DTDHandler handler) {
+            dtdHandler = handler;
+        }
+
+        @Override
+        public DTDHandler getDTDHandler() {
+            return dtdHandler;
+        }
+
+        @Override
+        public void setContentHandler(final ContentHandler handler) {
+            contentHandler = handler;
+        }
+
+        @Override
+        public ContentHandler getContentHandler() {
+            return contentHandler;
+        }
+
+        @Override
+        public void setErrorHandler(final ErrorHandler handler) {
+            errorHandler = handler;
+        }
+
+        @Override
+        public ErrorHandler getErrorHandler() {
+            return errorHandler;
+        }
+
+        @Override
+        public void parse(final InputSource input) throws SAXException {
+            if (contentHandler == null) throw new SAXException("No ContentHandler has been set");
+
+            replay(contentHandler, input == null ? null : input.getSystemId(), getFeature(NAMESPACE_PREFIXES_FEATURE));
+        }
+
+        @Override
+        public void parse(final String systemId) throws SAXException {
+            if (contentHandler == null) throw new SAXException("No ContentHandler has been set");
+
+            replay(contentHandler, systemId, getFeature(NAMESPACE_PREFIXES_FEATURE));
+        }
+    }
+}
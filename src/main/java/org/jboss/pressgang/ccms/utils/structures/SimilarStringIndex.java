@@ -0,0 +1,251 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+import org.jboss.pressgang.ccms.utils.common.StringUtilities;
+
+/**
+ * An index of strings that finds every string that is similar to a query string, using the same measure of similarity as
+ * {@link org.jboss.pressgang.ccms.utils.common.StringUtilities#similarLevenshtein(String, String)}. This can be used to suggest
+ * fuzzy matches from a translation memory without comparing the query against every stored string.
+ * <p/>
+ * The strings are held in a BK-tree, where each child is stored under its Levenshtein distance from its parent. As the distance is
+ * a metric, the triangle inequality means only the children whose distance is within the search radius of the query's distance to
+ * the parent can contain a match. Each node also records the range of string lengths below it, so subtrees that only contain strings
+ * that are too short or too long to be similar are skipped, and distances are only calculated as far as they are needed to pick the
+ * children to search.
+ */
+public class SimilarStringIndex {
+    private static final int PROFILE_SIZE = 64;
+
+    private Node root;
+    private int size;
+
+    public SimilarStringIndex() {
+    }
+
+    /**
+     * @param strings The strings to add to the index.
+     */
+    public SimilarStringIndex(final Collection<String> strings) {
+        addAll(strings);
+    }
+
+    /**
+     * Add a string to the index.
+     *
+     * @param value The string to add.
+     * @return True if the string was added, or false if it was already in the index.
+     */
+    public boolean add(final String value) {
+        if (value == null) throw new IllegalArgumentException("value cannot be null");
+
+        if (root == null) {
+            root = new Node(value, 0);
+            size++;
+            return true;
+        }
+
+        Node node = root;
+        while (true) {
+            final int distance = StringUtilities.getLevenshteinDistance(value, node.value, Integer.MAX_VALUE);
+            if (distance == 0) return false;
+
+            node.minLength = Math.min(node.minLength, value.length());
+            node.maxLength = Math.max(node.maxLength, value.length());
+            node.maxChildDistance = Math.max(node.maxChildDistance, distance);
+
+            Node child = node.firstChild;
+            while (child != null && child.distance != distance) {
+                child = child.nextSibling;
+            }
+
+            if (child == null) {
+                final Node newNode = new Node(value, distance);
+                newNode.nextSibling = node.firstChild;
+                node.firstChild = newNode;
+                size++;
+                return true;
+            }
+
+            node = child;
+        }
+    }
+
+    public void addAll(final Collection<String> strings) {
+        for (final String value : strings) {
+            add(value);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the strings in the index that are similar to a string.
+     *
+     * @param query     The string to find similar strings for.
+     * @param threshold The minimum similarity, between 0 (exclusive) and 1.0 (an exact match).
+     * @return The similar strings, with the most similar first.
+     */
+    public List<Match> findSimilar(final String query, final double threshold) {
+        if (query == null) throw new IllegalArgumentException("query cannot be null");
+        if (threshold <= 0 || threshold > 1.0) throw new IllegalArgumentException("threshold must be greater than 0 and at most 1.0");
+
+        final List<Match> matches = new ArrayList<Match>();
+        if (root == null) return matches;
+
+        /*
+         * The similarity is (maxLength - distance) / maxLength, so the distance can't be less than the difference in lengths. This
+         * means a similar string must be between threshold * length and length / threshold characters long, and the distance to it
+         * can't be more than (1 - threshold) of the longest length. Each bound is loosened by one to allow for rounding errors, as
+         * the exact similarity of each candidate is checked against the threshold anyway.
+         */
+        final int length = query.length();
+        final int minLength = (int) Math.max(0, Math.ceil(threshold * length) - 1);
+        final int maxLength = (int) Math.min(Integer.MAX_VALUE, Math.min(root.maxLength, Math.floor(length / threshold) + 1));
+        final int radius = (int) Math.min(Integer.MAX_VALUE, Math.floor((1.0 - threshold) * Math.max(length, maxLength)) + 1);
+
+        final int[] queryProfile = getProfile(query, new int[PROFILE_SIZE]);
+        final int[] profile = new int[PROFILE_SIZE];
+        final Deque<Node> nodes = new ArrayDeque<Node>();
+        nodes.push(root);
+        while (!nodes.isEmpty()) {
+            final Node node = nodes.pop();
+            if (node.maxLength < minLength || node.minLength > maxLength) continue;
+
+            // Only children within the radius of the distance to this node need to be searched
+            final int limit = radius + node.maxChildDistance;
+            int distance = limit + 1;
+            if (getProfileDistance(queryProfile, getProfile(node.value, profile)) <= limit) {
+                final int boundedDistance = StringUtilities.getLevenshteinDistance(query, node.value, limit);
+                if (boundedDistance != -1) distance = boundedDistance;
+            }
+
+            if (distance <= radius) {
+                final double similarity = getSimilarity(query, node.value, distance);
+                if (similarity >= threshold) {
+                    matches.add(new Match(node.value, similarity));
+                }
+            }
+
+            for (Node child = node.firstChild; child != null; child = child.nextSibling) {
+                if (child.distance >= distance - radius && child.distance <= distance + radius) {
+                    nodes.push(child);
+                }
+            }
+        }
+
+        Collections.sort(matches, new Comparator<Match>() {
+            @Override
+            public int compare(final Match o1, final Match o2) {
+                final int retValue = Double.compare(o2.similarity, o1.similarity);
+                return retValue == 0 ? o1.value.compareTo(o2.value) : retValue;
+            }
+        });
+
+        return matches;
+    }
+
+    /**
+     * Count the characters in a string, grouped into buckets.
+     */
+    private static int[] getProfile(final String value, final int[] profile) {
+        Arrays.fill(profile, 0);
+        for (int i = 0; i < value.length(); i++) {
+            profile[value.charAt(i) & (PROFILE_SIZE - 1)]++;
+        }
+
+        return profile;
+    }
+
+    /**
+     * Get a lower bound for the Levenshtein distance between two strings from their character counts. Each edit changes the
+     * counts by at most two, so the distance is at least half the total difference between the counts.
+     */
+    private static int getProfileDistance(final int[] profile1, final int[] profile2) {
+        int difference = 0;
+        for (int i = 0; i < PROFILE_SIZE; i++) {
+            difference += Math.abs(profile1[i] - profile2[i]);
+        }
+
+        return (difference + 1) / 2;
+    }
+
+    private static double getSimilarity(final String s1, final String s2, final int distance) {
+        if (distance == 0) return 1.0;
+
+        final int maxLength = Math.max(s1.length(), s2.length());
+        return (maxLength - distance) / (double) maxLength;
+    }
+
+    private static class Node {
+        private final String value;
+        /**
+         * The distance from the parent node.
+         */
+        private final int distance;
+        private Node firstChild;
+        private Node nextSibling;
+        private int maxChildDistance = 0;
+        private int minLength;
+        private int maxLength;
+
+        private Node(final String value, final int distance) {
+            this.value = value;
+            this.distance = distance;
+            minLength = value.length();
+            maxLength = value.length();
+        }
+    }
+
+    /**
+     * A string from the index that matched a query.
+     */
+    public static class Match {
+        private final String value;
+        private final double similarity;
+
+        private Match(final String value, final double similarity) {
+            this.value = value;
+            this.similarity = similarity;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return The similarity to the query, between 0 and 1.0.
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+}
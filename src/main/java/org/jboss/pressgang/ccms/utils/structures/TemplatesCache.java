@@ -0,0 +1,176 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of compiled stylesheets, keyed by the stylesheet system id and a hash of the stylesheet content. Each stylesheet is
+ * only compiled once, by the first thread that requests it, and any other threads requesting the same stylesheet wait for that
+ * compile to finish. Threads requesting other stylesheets are never blocked.
+ * <p/>
+ * Once the cache is full the least recently used stylesheet is evicted.
+ */
+public class TemplatesCache {
+    private final int maxSize;
+    private final ConcurrentHashMap<String, CacheEntry> entries = new ConcurrentHashMap<String, CacheEntry>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong compileTime = new AtomicLong();
+
+    /**
+     * @param maxSize The maximum number of compiled stylesheets to hold.
+     */
+    public TemplatesCache(final int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be greater than 0");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the compiled stylesheet for a system id and content hash, compiling it if it hasn't been cached.
+     *
+     * @param systemId    The system id of the stylesheet.
+     * @param contentHash A hash of the stylesheet content.
+     * @param compiler    The callable used to compile the stylesheet if it isn't cached.
+     * @return The compiled stylesheet.
+     * @throws TransformerException Thrown if the stylesheet fails to compile.
+     */
+    public Templates get(final String systemId, final String contentHash, final Callable<Templates> compiler) throws TransformerException {
+        final String key = systemId + "\u0000" + contentHash;
+        CacheEntry entry = entries.get(key);
+        if (entry == null) {
+            final CacheEntry newEntry = new CacheEntry(systemId, new FutureTask<Templates>(compiler));
+            entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+                entry.lastAccessed = clock.incrementAndGet();
+                misses.incrementAndGet();
+
+                final long start = System.nanoTime();
+                entry.templates.run();
+                compileTime.addAndGet(System.nanoTime() - start);
+
+                evictIfRequired();
+            } else {
+                entry.lastAccessed = clock.incrementAndGet();
+                hits.incrementAndGet();
+            }
+        } else {
+            entry.lastAccessed = clock.incrementAndGet();
+            hits.incrementAndGet();
+        }
+
+        try {
+            return entry.templates.get();
+        } catch (ExecutionException e) {
+            // Don't cache failures, so that the stylesheet can be fixed and recompiled
+            entries.remove(key, entry);
+            if (e.getCause() instanceof TransformerException) {
+                throw (TransformerException) e.getCause();
+            } else {
+                throw new TransformerException(e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransformerException(e);
+        }
+    }
+
+    private void evictIfRequired() {
+        while (entries.size() > maxSize) {
+            String oldestKey = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (final Map.Entry<String, CacheEntry> entry : entries.entrySet()) {
+                if (entry.getValue().templates.isDone() && entry.getValue().lastAccessed < oldestAccess) {
+                    oldestKey = entry.getKey();
+                    oldestAccess = entry.getValue().lastAccessed;
+                }
+            }
+
+            if (oldestKey == null || entries.remove(oldestKey) == null) {
+                return;
+            }
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes all the compiled versions of a stylesheet from the cache.
+     *
+     * @param systemId The system id of the stylesheet.
+     */
+    public void invalidate(final String systemId) {
+        for (final Map.Entry<String, CacheEntry> entry : entries.entrySet()) {
+            if (entry.getValue().systemId.equals(systemId)) {
+                entries.remove(entry.getKey());
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return The total time spent compiling stylesheets, in milliseconds.
+     */
+    public long getTotalCompileTime() {
+        return compileTime.get() / 1000000L;
+    }
+
+    private static class CacheEntry {
+        private final String systemId;
+        private final FutureTask<Templates> templates;
+        private volatile long lastAccessed;
+
+        private CacheEntry(final String systemId, final FutureTask<Templates> templates) {
+            this.systemId = systemId;
+            this.templates = templates;
+        }
+    }
+}
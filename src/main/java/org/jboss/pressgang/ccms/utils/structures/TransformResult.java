@@ -0,0 +1,50 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+/**
+ * Holds the output of transforming a single item in a batch, or the error that stopped it from being transformed.
+ */
+public class TransformResult {
+    private final String output;
+    private final Exception error;
+
+    public TransformResult(final String output, final Exception error) {
+        this.output = output;
+        this.error = error;
+    }
+
+    /**
+     * @return The transformed output, or null if the transform failed.
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * @return The error thrown while transforming the item, or null if it was transformed successfully.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+}
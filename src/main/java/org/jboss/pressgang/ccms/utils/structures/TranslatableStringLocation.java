@@ -0,0 +1,68 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.structures;
+
+/**
+ * A translatable string along with the location of the nodes it was built from. Unlike {@link StringToNodeCollection} no
+ * references to the document are held, so the string can be kept after the document has been discarded.
+ */
+public class TranslatableStringLocation {
+    private final String translationString;
+    private final String path;
+    private final int nodeIndex;
+    private final int nodeCount;
+
+    public TranslatableStringLocation(final String translationString, final String path, final int nodeIndex, final int nodeCount) {
+        this.translationString = translationString;
+        this.path = path;
+        this.nodeIndex = nodeIndex;
+        this.nodeCount = nodeCount;
+    }
+
+    public String getTranslationString() {
+        return translationString;
+    }
+
+    /**
+     * @return The XPath of the element that contains the nodes the string was built from, ie "/book/chapter[2]/para[3]".
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The index of the first node the string was built from, in the child nodes of the element at {@link #getPath()}.
+     */
+    public int getNodeIndex() {
+        return nodeIndex;
+    }
+
+    /**
+     * @return The number of sibling nodes the string was built from.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public String toString() {
+        return path + "/node()[" + (nodeIndex + 1) + (nodeCount > 1 ? "-" + (nodeIndex + nodeCount) : "") + "]: " + translationString;
+    }
+}
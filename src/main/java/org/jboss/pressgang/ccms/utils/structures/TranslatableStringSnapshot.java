@@ -0,0 +1,219 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.pressgang.ccms.utils.common.XMLUtilities;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * The translatable strings extracted from a document, grouped by the blocks of the document they were extracted from. Each block is
+ * identified by a hash of its subtree and the context it was extracted in, so the strings for any block that is unchanged in a later
+ * revision of the document can be reused without having to extract them again. The snapshot doesn't hold any references to the
+ * document, so it can be cached between revisions.
+ *
+ * @see org.jboss.pressgang.ccms.utils.common.DocBookUtilities#getTranslatableStringsDelta(TranslatableStringSnapshot, Document)
+ */
+public class TranslatableStringSnapshot {
+    private final Map<String, Block> blocks;
+    private final Block root;
+    private final List<String> translationStrings;
+
+    /**
+     * @param blocks The blocks that make up the document, mapped by their key.
+     * @param root   The block for the document element.
+     */
+    public TranslatableStringSnapshot(final Map<String, Block> blocks, final Block root) {
+        if (blocks == null) throw new IllegalArgumentException("blocks cannot be null");
+        if (root == null) throw new IllegalArgumentException("root cannot be null");
+
+        this.blocks = Collections.unmodifiableMap(blocks);
+        this.root = root;
+
+        final Set<String> strings = new LinkedHashSet<String>();
+        collectTranslationStrings(root, strings);
+        translationStrings = Collections.unmodifiableList(new ArrayList<String>(strings));
+    }
+
+    private void collectTranslationStrings(final Block block, final Set<String> strings) {
+        if (block.translationStrings != null) {
+            Collections.addAll(strings, block.translationStrings);
+        } else {
+            for (final String childKey : block.childKeys) {
+                collectTranslationStrings(getBlock(childKey), strings);
+            }
+        }
+    }
+
+    /**
+     * Get a block from the snapshot.
+     *
+     * @param key The key of the block.
+     * @return The block, or null if the document didn't contain the block.
+     */
+    public Block getBlock(final String key) {
+        return key == null ? null : blocks.get(key);
+    }
+
+    public Map<String, Block> getBlocks() {
+        return blocks;
+    }
+
+    public Block getRoot() {
+        return root;
+    }
+
+    /**
+     * Get the distinct translation strings in the document, in the order they first appear.
+     *
+     * @return The translation strings of the document.
+     */
+    public List<String> getTranslationStrings() {
+        return translationStrings;
+    }
+
+    /**
+     * Bind the snapshot to a document that has the same content as the document the snapshot was taken from. The collections that
+     * are returned are the same as those returned by
+     * {@link org.jboss.pressgang.ccms.utils.common.DocBookUtilities#getTranslatableStringsV3(Document, boolean)}, without duplicates.
+     *
+     * @param doc The document to bind to.
+     * @return The string to node collections for the document.
+     */
+    public List<StringToNodeCollection> bind(final Document doc) {
+        if (doc == null) throw new IllegalArgumentException("doc cannot be null");
+
+        final TranslationStringList retValue = new TranslationStringList();
+        bind(doc.getDocumentElement(), root, retValue);
+        return retValue;
+    }
+
+    private void bind(final Node node, final Block block, final TranslationStringList translationStrings) {
+        if (block.translationStrings != null) {
+            for (int i = 0; i < block.translationStrings.length; i++) {
+                final ArrayList<Node> nodes = new ArrayList<Node>(block.nodePaths[i].length);
+                for (final int[] nodePath : block.nodePaths[i]) {
+                    final Node blockNode = XMLUtilities.getNodeByPath(node, nodePath);
+                    if (blockNode == null) {
+                        throw new IllegalArgumentException("The document doesn't contain the nodes for \"" + block.translationStrings[i] +
+                                "\"");
+                    }
+                    nodes.add(blockNode);
+                }
+
+                final StringToNodeCollection existing = translationStrings.findByTranslationString(block.translationStrings[i]);
+                if (existing == null) {
+                    translationStrings.add(new StringToNodeCollection(block.translationStrings[i]).addNodeCollection(nodes));
+                } else {
+                    existing.addNodeCollection(nodes);
+                }
+            }
+        } else {
+            final NodeList children = node.getChildNodes();
+            for (int i = 0; i < block.childIndexes.length; i++) {
+                if (block.childIndexes[i] >= children.getLength()) {
+                    throw new IllegalArgumentException("The document doesn't match the snapshot");
+                }
+                bind(children.item(block.childIndexes[i]), getBlock(block.childKeys[i]), translationStrings);
+            }
+        }
+    }
+
+    /**
+     * A block of a document. A block either holds the translation strings that were extracted from it, or is made up of the blocks
+     * for its child nodes.
+     */
+    public static class Block {
+        private final String[] translationStrings;
+        /**
+         * The paths to the nodes for each translation string, relative to the block's node.
+         */
+        private final int[][][] nodePaths;
+        private final int[] childIndexes;
+        private final String[] childKeys;
+
+        /**
+         * Create a block that holds the strings extracted from a node.
+         *
+         * @param node                    The node the strings were extracted from.
+         * @param stringToNodeCollections The strings that were extracted from the node, with duplicates.
+         */
+        public Block(final Node node, final List<StringToNodeCollection> stringToNodeCollections) {
+            if (node == null) throw new IllegalArgumentException("node cannot be null");
+            if (stringToNodeCollections == null) throw new IllegalArgumentException("stringToNodeCollections cannot be null");
+
+            translationStrings = new String[stringToNodeCollections.size()];
+            nodePaths = new int[stringToNodeCollections.size()][][];
+            for (int i = 0; i < translationStrings.length; i++) {
+                final StringToNodeCollection stringToNodeCollection = stringToNodeCollections.get(i);
+                final List<Node> nodes = stringToNodeCollection.getNodeCollections().get(0);
+                translationStrings[i] = stringToNodeCollection.getTranslationString();
+                nodePaths[i] = new int[nodes.size()][];
+                for (int j = 0; j < nodes.size(); j++) {
+                    nodePaths[i][j] = XMLUtilities.getNodePath(node, nodes.get(j));
+                    if (nodePaths[i][j] == null) {
+                        throw new IllegalArgumentException("The nodes for \"" + translationStrings[i] + "\" are not in the block");
+                    }
+                }
+            }
+            childIndexes = null;
+            childKeys = null;
+        }
+
+        /**
+         * Create a block that is made up of the blocks for its child nodes.
+         *
+         * @param childIndexes The index of each child node in the block's node.
+         * @param childKeys    The key of the block for each child node.
+         */
+        public Block(final int[] childIndexes, final String[] childKeys) {
+            if (childIndexes == null || childKeys == null) throw new IllegalArgumentException("childIndexes cannot be null");
+            if (childIndexes.length != childKeys.length) {
+                throw new IllegalArgumentException("childIndexes and childKeys must be the same length");
+            }
+
+            translationStrings = null;
+            nodePaths = null;
+            this.childIndexes = childIndexes;
+            this.childKeys = childKeys;
+        }
+
+        /**
+         * @return The keys of the child blocks, or null if the block holds its own translation strings.
+         */
+        public String[] getChildKeys() {
+            return childKeys;
+        }
+
+        /**
+         * @return The translation strings extracted from the block, or null if the block is made up of child blocks.
+         */
+        public String[] getTranslationStrings() {
+            return translationStrings;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.structures;
+
+import java.util.Map;
+
+import org.jboss.pressgang.ccms.utils.common.StringUtilities;
+
+/**
+ * An index of translations that finds the translation for a source string, even if the padding around the string was removed when
+ * it was translated (Zanata trims strings due to XML serialization). The translations are indexed by their trimmed content, so each
+ * source string is resolved with a single lookup, without creating any trimmed copies of the string.
+ * <p/>
+ * Matches are made in the following order: the exact string, the string with leading spaces removed, the string with trailing
+ * spaces removed, and finally the string with all leading and trailing whitespace removed.
+ */
+public class TranslationIndex {
+    private final Entry[] table;
+    private final int size;
+
+    /**
+     * @param translations The translations, mapped by the (possibly trimmed) source string.
+     */
+    public TranslationIndex(final Map<String, String> translations) {
+        int capacity = 16;
+        while (capacity < translations.size() * 2) {
+            capacity <<= 1;
+        }
+        table = new Entry[capacity];
+
+        int count = 0;
+        for (final Map.Entry<String, String> translation : translations.entrySet()) {
+            final String key = translation.getKey();
+            if (key == null) continue;
+
+            final Entry entry = new Entry(key, translation.getValue());
+            final int index = findSlot(key, entry.start, entry.end);
+            if (table[index] == null) {
+                table[index] = entry;
+            } else {
+                // Another translation has the same trimmed content
+                entry.next = table[index].next;
+                table[index].next = entry;
+            }
+            count++;
+        }
+        size = count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the translation for a source string.
+     *
+     * @param originalString The source string.
+     * @return The details of the matched translation, or null if there is no translation for the string.
+     */
+    public Match find(final String originalString) {
+        if (originalString == null) return null;
+
+        final int length = originalString.length();
+        int start = 0;
+        int end = length;
+        while (start < end && originalString.charAt(start) <= ' ') start++;
+        while (end > start && originalString.charAt(end - 1) <= ' ') end--;
+
+        final Entry head = table[findSlot(originalString, start, end)];
+        if (head == null) return null;
+
+        // Only leading or trailing spaces are removed by ltrim and rtrim
+        int leftSpaces = 0;
+        while (leftSpaces < length && originalString.charAt(leftSpaces) == ' ') leftSpaces++;
+        int rightSpaces = 0;
+        while (rightSpaces < length && originalString.charAt(length - 1 - rightSpaces) == ' ') rightSpaces++;
+
+        Entry lTrimMatch = null;
+        Entry rTrimMatch = null;
+        Entry trimMatch = null;
+        for (Entry entry = head; entry != null; entry = entry.next) {
+            final String key = entry.key;
+            if (key.length() == length && key.equals(originalString)) {
+                return new Match(key, entry.translation, 0, 0);
+            } else if (lTrimMatch == null && key.length() == length - leftSpaces && originalString.startsWith(key, leftSpaces)) {
+                lTrimMatch = entry;
+            } else if (rTrimMatch == null && key.length() == length - rightSpaces && originalString.startsWith(key, 0)) {
+                rTrimMatch = entry;
+            } else if (trimMatch == null && key.length() == end - start && originalString.startsWith(key, start)) {
+                trimMatch = entry;
+            }
+        }
+
+        // remember the details of the trimming, so the padding can be added back
+        if (lTrimMatch != null) {
+            return new Match(lTrimMatch.key, lTrimMatch.translation, leftSpaces, 0);
+        } else if (rTrimMatch != null) {
+            return new Match(rTrimMatch.key, rTrimMatch.translation, 0, rightSpaces);
+        } else if (trimMatch != null) {
+            return new Match(trimMatch.key, trimMatch.translation, StringUtilities.ltrimCount(originalString),
+                    StringUtilities.rtrimCount(originalString));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Find the slot for some trimmed content, which will either be empty or hold the translations with the same content.
+     */
+    private int findSlot(final String string, final int start, final int end) {
+        // This is the same hash as String.hashCode(), so the cached hash can be used when there is nothing to trim
+        int hash = 0;
+        if (start == 0 && end == string.length()) {
+            hash = string.hashCode();
+        } else {
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + string.charAt(i);
+            }
+        }
+        hash ^= (hash >>> 16);
+
+        final int mask = table.length - 1;
+        int index = hash & mask;
+        while (table[index] != null) {
+            final Entry entry = table[index];
+            if (entry.end - entry.start == end - start && entry.key.regionMatches(entry.start, string, start, end - start)) {
+                break;
+            }
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    private static class Entry {
+        private final String key;
+        private final String translation;
+        private final int start;
+        private final int end;
+        private Entry next;
+
+        private Entry(final String key, final String translation) {
+            this.key = key;
+            this.translation = translation;
+
+            int start = 0;
+            int end = key.length();
+            while (start < end && key.charAt(start) <= ' ') start++;
+            while (end > start && key.charAt(end - 1) <= ' ') end--;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * The translation that was matched to a source string.
+     */
+    public static class Match {
+        private final String fixedString;
+        private final String translation;
+        private final int leftTrimCount;
+        private final int rightTrimCount;
+
+        private Match(final String fixedString, final String translation, final int leftTrimCount, final int rightTrimCount) {
+            this.fixedString = fixedString;
+            this.translation = translation;
+            this.leftTrimCount = leftTrimCount;
+            this.rightTrimCount = rightTrimCount;
+        }
+
+        /**
+         * @return The key in the translations that the source string was matched to.
+         */
+        public String getFixedString() {
+            return fixedString;
+        }
+
+        public String getTranslation() {
+            return translation;
+        }
+
+        /**
+         * @return The number of spaces that were removed from the left of the source string.
+         */
+        public int getLeftTrimCount() {
+            return leftTrimCount;
+        }
+
+        /**
+         * @return The number of spaces that were removed from the right of the source string.
+         */
+        public int getRightTrimCount() {
+            return rightTrimCount;
+        }
+    }
+}
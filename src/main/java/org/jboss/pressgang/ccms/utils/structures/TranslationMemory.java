@@ -0,0 +1,608 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.pressgang.ccms.utils.common.HashUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A disk backed store of translations, so that translations fetched from a translation server can be reused by later builds. Each
+ * translation is keyed by a 64 bit hash of the locale and the source string it translates.
+ * <p/>
+ * The store is made up of two files. The log holds every translation that has been added, and is only ever appended to. The index
+ * is a memory-mapped open addressing hash table that maps each key to the latest record in the log for that key. The records are
+ * checked against the source string and locale when they are looked up, so hash collisions can't return the wrong translation. If
+ * the index is lost, or wasn't updated before a crash, it is rebuilt from the log when the store is opened.
+ * <p/>
+ * The on disk formats are as follows (all numbers are big-endian, and strings are an int length followed by the UTF-8 bytes):
+ * <pre>
+ * log:   int magic ("PGTL"), int format version, record[] where each record is: a long key hash, the locale, the source string
+ *        and the translation
+ * index: int magic ("PGTI"), int format version, int capacity, int size, long length of the log that has been indexed,
+ *        long reserved, slot[capacity] where each slot is: a long key hash and a long record offset (0 if the slot is empty)
+ * </pre>
+ * A store can only be opened by one process at a time.
+ */
+public class TranslationMemory {
+    private static final Logger LOG = LoggerFactory.getLogger(TranslationMemory.class);
+    private static final int LOG_MAGIC = 0x5047544C;
+    private static final int INDEX_MAGIC = 0x50475449;
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER_LENGTH = 8;
+    private static final int INDEX_HEADER_LENGTH = 32;
+    private static final int SLOT_LENGTH = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final String LOG_FILE_NAME = "translations.log";
+    private static final String INDEX_FILE_NAME = "translations.idx";
+    private static final Map<String, TranslationMemory> OPEN_MEMORIES = new HashMap<String, TranslationMemory>();
+
+    private final String name;
+    private final RandomAccessFile logFile;
+    private final RandomAccessFile indexFile;
+    private final FileChannel logChannel;
+    private final FileChannel indexChannel;
+    private final FileLock lock;
+    /**
+     * A read-only view of the log. Records that have been appended since the log was mapped are read through the channel, and the log
+     * is only remapped once it has doubled in size.
+     */
+    private MappedByteBuffer logBuffer;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int size;
+    private long logLength;
+    /**
+     * The number of times the translation memory has been opened and not yet closed, guarded by {@link #OPEN_MEMORIES}.
+     */
+    private int openCount = 0;
+    private boolean closed = false;
+
+    /**
+     * A source of translations that aren't in the translation memory, such as a translation server.
+     */
+    public interface TranslationProvider {
+        /**
+         * Get the translations for a set of source strings.
+         *
+         * @param locale        The locale to get the translations for.
+         * @param sourceStrings The strings to translate.
+         * @return The translations that could be found, mapped by their source string.
+         */
+        Map<String, String> getTranslations(String locale, Set<String> sourceStrings);
+    }
+
+    /**
+     * Opens the translation memory stored in a directory, creating it if it doesn't exist. The files are only opened the first time
+     * the directory is opened, after which the same instance is returned. Each call should be matched by a call to {@link #close()},
+     * and the files are closed once every caller has closed the translation memory.
+     *
+     * @param directory The directory the translation memory is stored in.
+     * @return The translation memory for the directory.
+     * @throws IOException Thrown if the translation memory can't be opened, or is being used by another process.
+     */
+    public static TranslationMemory open(final File directory) throws IOException {
+        if (directory == null) throw new IllegalArgumentException("directory cannot be null");
+
+        final String name = directory.getCanonicalPath();
+        synchronized (OPEN_MEMORIES) {
+            TranslationMemory translationMemory = OPEN_MEMORIES.get(name);
+            if (translationMemory == null) {
+                translationMemory = new TranslationMemory(directory, name);
+                OPEN_MEMORIES.put(name, translationMemory);
+            }
+            translationMemory.openCount++;
+
+            return translationMemory;
+        }
+    }
+
+    private TranslationMemory(final File directory, final String name) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the translation memory directory " + directory.getAbsolutePath());
+        }
+
+        this.name = name;
+        logFile = new RandomAccessFile(new File(directory, LOG_FILE_NAME), "rw");
+        indexFile = new RandomAccessFile(new File(directory, INDEX_FILE_NAME), "rw");
+        logChannel = logFile.getChannel();
+        indexChannel = indexFile.getChannel();
+
+        boolean opened = false;
+        try {
+            lock = indexChannel.tryLock();
+            if (lock == null) {
+                throw new IOException("The translation memory " + name + " is being used by another process");
+            }
+
+            openLog();
+            openIndex();
+            opened = true;
+        } finally {
+            if (!opened) {
+                logFile.close();
+                indexFile.close();
+            }
+        }
+    }
+
+    private void openLog() throws IOException {
+        if (logChannel.size() < LOG_HEADER_LENGTH) {
+            final ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_LENGTH);
+            header.putInt(LOG_MAGIC).putInt(VERSION).flip();
+            logChannel.truncate(0);
+            write(logChannel, header, 0);
+        } else {
+            final ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_LENGTH);
+            read(logChannel, header, 0);
+            if (header.getInt(0) != LOG_MAGIC) {
+                throw new IOException(name + " is not a translation memory");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported translation memory version " + header.getInt(4));
+            }
+        }
+
+        if (logChannel.size() > Integer.MAX_VALUE) {
+            throw new IOException("The translation memory " + name + " is too large to be mapped");
+        }
+        mapLog();
+    }
+
+    private void openIndex() throws IOException {
+        long indexedLength = -1;
+        if (indexChannel.size() >= INDEX_HEADER_LENGTH) {
+            final ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_LENGTH);
+            read(indexChannel, header, 0);
+            final int indexCapacity = header.getInt(8);
+            if (header.getInt(0) == INDEX_MAGIC && header.getInt(4) == VERSION && indexCapacity >= INITIAL_CAPACITY
+                    && Integer.bitCount(indexCapacity) == 1
+                    && indexChannel.size() >= INDEX_HEADER_LENGTH + (long) indexCapacity * SLOT_LENGTH) {
+                indexedLength = header.getLong(16);
+                capacity = indexCapacity;
+                size = header.getInt(12);
+            }
+        }
+
+        if (indexedLength < LOG_HEADER_LENGTH || indexedLength > logChannel.size()) {
+            if (logChannel.size() > LOG_HEADER_LENGTH) {
+                LOG.warn("Rebuilding the index for the translation memory " + name);
+            }
+            capacity = INITIAL_CAPACITY;
+            size = 0;
+            mapIndex();
+            clearIndex();
+            indexedLength = LOG_HEADER_LENGTH;
+        } else {
+            mapIndex();
+        }
+
+        // Index any records that were added to the log after the index was last updated
+        long position = indexedLength;
+        final long length = logChannel.size();
+        while (position < length) {
+            final long recordEnd = getRecordEnd(position, length);
+            if (recordEnd < 0) {
+                LOG.warn("Discarding an incomplete record at the end of the translation memory " + name);
+                logChannel.truncate(position);
+                mapLog();
+                break;
+            }
+
+            final long hash = logBuffer.getLong((int) position);
+            final int slot = findSlot(hash, readBytes(position + 8), readBytes(position + 12 + logBuffer.getInt((int) position + 8)));
+            addToIndex(slot, hash, position);
+            position = recordEnd;
+        }
+        logLength = position;
+        writeIndexHeader();
+    }
+
+    /**
+     * Find the end of a record, checking that the whole record was written.
+     *
+     * @return The offset of the end of the record, or -1 if the record is incomplete.
+     */
+    private long getRecordEnd(final long offset, final long length) {
+        long position = offset + 8;
+        for (int i = 0; i < 3; ++i) {
+            if (position + 4 > length) return -1;
+            final int stringLength = logBuffer.getInt((int) position);
+            if (stringLength < 0) return -1;
+            position += 4 + stringLength;
+        }
+
+        return position > length ? -1 : position;
+    }
+
+    private void mapLog() throws IOException {
+        logBuffer = logChannel.map(FileChannel.MapMode.READ_ONLY, 0, logChannel.size());
+    }
+
+    private void mapIndex() throws IOException {
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_LENGTH + (long) capacity * SLOT_LENGTH);
+    }
+
+    private void clearIndex() {
+        for (int i = 0; i < capacity; ++i) {
+            index.putLong(INDEX_HEADER_LENGTH + i * SLOT_LENGTH, 0L);
+            index.putLong(INDEX_HEADER_LENGTH + i * SLOT_LENGTH + 8, 0L);
+        }
+    }
+
+    private void writeIndexHeader() {
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, VERSION);
+        index.putInt(8, capacity);
+        index.putInt(12, size);
+        index.putLong(16, logLength);
+        index.putLong(24, 0L);
+    }
+
+    /**
+     * Get the 64 bit hash that a translation is keyed by.
+     *
+     * @param locale       The locale of the translation.
+     * @param sourceString The string that was translated.
+     * @return The key hash.
+     */
+    public static long getKeyHash(final String locale, final String sourceString) {
+        return HashUtilities.generateFNV1a64(HashUtilities.generateFNV1a64(HashUtilities.generateFNV1a64(locale), "\u0000"),
+                sourceString);
+    }
+
+    /**
+     * Get a translation from the translation memory.
+     *
+     * @param locale       The locale of the translation.
+     * @param sourceString The string that was translated.
+     * @return The translation, or null if the translation memory doesn't have a translation for the string.
+     */
+    public synchronized String get(final String locale, final String sourceString) {
+        checkOpen();
+        if (locale == null || sourceString == null) return null;
+
+        final int slot = findSlot(getKeyHash(locale, sourceString), encode(locale), encode(sourceString));
+        final long offset = index.getLong(INDEX_HEADER_LENGTH + slot * SLOT_LENGTH + 8);
+        return offset == 0 ? null : readTranslation(offset);
+    }
+
+    private String readTranslation(final long offset) {
+        int position = (int) offset + 8;
+        position += 4 + readInt(position);
+        position += 4 + readInt(position);
+        return decode(readBytes(position));
+    }
+
+    /**
+     * Add a translation to the translation memory, replacing any existing translation for the source string.
+     *
+     * @param locale       The locale of the translation.
+     * @param sourceString The string that was translated.
+     * @param translation  The translation.
+     * @throws IOException Thrown if the translation couldn't be written to disk.
+     */
+    public synchronized void put(final String locale, final String sourceString, final String translation) throws IOException {
+        checkOpen();
+        if (locale == null) throw new IllegalArgumentException("locale cannot be null");
+        if (sourceString == null) throw new IllegalArgumentException("sourceString cannot be null");
+        if (translation == null) throw new IllegalArgumentException("translation cannot be null");
+
+        final long hash = getKeyHash(locale, sourceString);
+        final byte[] localeBytes = encode(locale);
+        final byte[] sourceBytes = encode(sourceString);
+        final byte[] translationBytes = encode(translation);
+        final int slot = findSlot(hash, localeBytes, sourceBytes);
+        final long existingOffset = index.getLong(INDEX_HEADER_LENGTH + slot * SLOT_LENGTH + 8);
+        if (existingOffset != 0 && translation.equals(readTranslation(existingOffset))) return;
+
+        final long recordLength = 8 + 4 + localeBytes.length + 4 + sourceBytes.length + 4 + translationBytes.length;
+        if (logLength + recordLength > Integer.MAX_VALUE) {
+            throw new IOException("The translation memory " + name + " is full");
+        }
+
+        final ByteBuffer record = ByteBuffer.allocate((int) recordLength);
+        record.putLong(hash);
+        record.putInt(localeBytes.length).put(localeBytes);
+        record.putInt(sourceBytes.length).put(sourceBytes);
+        record.putInt(translationBytes.length).put(translationBytes);
+        record.flip();
+        write(logChannel, record, logLength);
+
+        final long recordOffset = logLength;
+        logLength += recordLength;
+        addToIndex(slot, hash, recordOffset);
+        writeIndexHeader();
+    }
+
+    /**
+     * Get the translations for a set of source strings. Any strings that aren't in the translation memory are requested from the
+     * provider, and the translations it returns are added to the translation memory. The provider may return translations that have
+     * had their leading or trailing whitespace removed, in which case the whitespace is added back before the translation is stored.
+     *
+     * @param locale        The locale of the translations.
+     * @param sourceStrings The strings to get the translations for.
+     * @param provider      The provider to request missing translations from, or null if only the translation memory should be used.
+     * @return The translations that could be found, mapped by their source string.
+     */
+    public Map<String, String> getTranslations(final String locale, final Collection<String> sourceStrings,
+            final TranslationProvider provider) {
+        if (locale == null) throw new IllegalArgumentException("locale cannot be null");
+
+        final Map<String, String> translations = new HashMap<String, String>();
+        final Set<String> missingStrings = new LinkedHashSet<String>();
+        for (final String sourceString : sourceStrings) {
+            final String translation = get(locale, sourceString);
+            if (translation != null) {
+                translations.put(sourceString, translation);
+            } else if (sourceString != null) {
+                missingStrings.add(sourceString);
+            }
+        }
+
+        if (!missingStrings.isEmpty() && provider != null) {
+            final Map<String, String> providedTranslations = provider.getTranslations(locale, missingStrings);
+            if (providedTranslations != null && !providedTranslations.isEmpty()) {
+                final TranslationIndex translationIndex = new TranslationIndex(providedTranslations);
+                for (final String missingString : missingStrings) {
+                    final TranslationIndex.Match match = translationIndex.find(missingString);
+                    if (match == null || match.getTranslation() == null || match.getTranslation().isEmpty()) continue;
+
+                    final StringBuilder paddedTranslation = new StringBuilder();
+                    for (int i = 0; i < match.getLeftTrimCount(); ++i)
+                        paddedTranslation.append(" ");
+                    paddedTranslation.append(match.getTranslation());
+                    for (int i = 0; i < match.getRightTrimCount(); ++i)
+                        paddedTranslation.append(" ");
+
+                    translations.put(missingString, paddedTranslation.toString());
+                    try {
+                        put(locale, missingString, paddedTranslation.toString());
+                    } catch (IOException e) {
+                        LOG.error("Unable to add a translation to the translation memory " + name, e);
+                    }
+                }
+            }
+        }
+
+        return translations;
+    }
+
+    /**
+     * Find the slot for a key, which is either the slot that holds the key or the empty slot the key should be added to.
+     */
+    private int findSlot(final long hash, final byte[] localeBytes, final byte[] sourceBytes) {
+        int slot = getInitialSlot(hash);
+        while (true) {
+            final int position = INDEX_HEADER_LENGTH + slot * SLOT_LENGTH;
+            final long offset = index.getLong(position + 8);
+            if (offset == 0 || (index.getLong(position) == hash && isRecordForKey(offset, localeBytes, sourceBytes))) {
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    private int getInitialSlot(final long hash) {
+        // Mix the bits, as the low bits of the hash are used to pick the slot
+        long mixed = hash ^ (hash >>> 33);
+        mixed *= 0xff51afd7ed558ccdL;
+        mixed ^= mixed >>> 33;
+        return (int) mixed & (capacity - 1);
+    }
+
+    /**
+     * Point a slot at a record, growing the index if it has become too full.
+     */
+    private void addToIndex(final int slot, final long hash, final long offset) throws IOException {
+        final boolean newKey = index.getLong(INDEX_HEADER_LENGTH + slot * SLOT_LENGTH + 8) == 0;
+        setSlot(slot, hash, offset);
+        if (newKey) {
+            size++;
+            if (size * 4L > capacity * 3L) {
+                resize(capacity * 2);
+            }
+        }
+    }
+
+    private void setSlot(final int slot, final long hash, final long offset) {
+        index.putLong(INDEX_HEADER_LENGTH + slot * SLOT_LENGTH, hash);
+        index.putLong(INDEX_HEADER_LENGTH + slot * SLOT_LENGTH + 8, offset);
+    }
+
+    private boolean isRecordForKey(final long offset, final byte[] localeBytes, final byte[] sourceBytes) {
+        final int localePosition = (int) offset + 8;
+        if (!isEqual(localePosition, localeBytes)) return false;
+        return isEqual(localePosition + 4 + localeBytes.length, sourceBytes);
+    }
+
+    private boolean isEqual(final int position, final byte[] bytes) {
+        if (readInt(position) != bytes.length) return false;
+
+        final ByteBuffer view = getLogView(position + 4, bytes.length);
+        for (int i = 0; i < bytes.length; ++i) {
+            if (view.get() != bytes[i]) return false;
+        }
+
+        return true;
+    }
+
+    private int readInt(final long position) {
+        return getLogView(position, 4).getInt();
+    }
+
+    private byte[] readBytes(final long position) {
+        final byte[] bytes = new byte[readInt(position)];
+        getLogView(position + 4, bytes.length).get(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Get a view of part of the log. Parts that have been appended since the log was mapped are read through the channel, and the log
+     * is only remapped once it has doubled in size, so that reading newly added records doesn't remap the whole log every time.
+     */
+    private ByteBuffer getLogView(final long position, final int length) {
+        try {
+            final long end = position + length;
+            if (end > logBuffer.capacity() && logLength >= 2L * logBuffer.capacity()) {
+                mapLog();
+            }
+
+            final ByteBuffer view;
+            if (end <= logBuffer.capacity()) {
+                view = logBuffer.duplicate();
+                view.limit((int) end);
+                view.position((int) position);
+            } else {
+                view = ByteBuffer.allocate(length);
+                read(logChannel, view, position);
+                view.flip();
+            }
+
+            return view;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void resize(final int newCapacity) throws IOException {
+        final long[] hashes = new long[size];
+        final long[] offsets = new long[size];
+        int count = 0;
+        for (int i = 0; i < capacity; ++i) {
+            final long offset = index.getLong(INDEX_HEADER_LENGTH + i * SLOT_LENGTH + 8);
+            if (offset != 0) {
+                hashes[count] = index.getLong(INDEX_HEADER_LENGTH + i * SLOT_LENGTH);
+                offsets[count++] = offset;
+            }
+        }
+
+        // Mark the index as not covering any of the log, so it will be rebuilt if the resize doesn't finish
+        index.putLong(16, 0L);
+
+        capacity = newCapacity;
+        mapIndex();
+        clearIndex();
+        for (int i = 0; i < count; ++i) {
+            int slot = getInitialSlot(hashes[i]);
+            while (index.getLong(INDEX_HEADER_LENGTH + slot * SLOT_LENGTH + 8) != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            setSlot(slot, hashes[i], offsets[i]);
+        }
+        writeIndexHeader();
+    }
+
+    /**
+     * Writes any changes to the translation memory to disk.
+     *
+     * @throws IOException Thrown if the changes couldn't be written.
+     */
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        logChannel.force(false);
+        index.force();
+    }
+
+    /**
+     * Flushes the translation memory, and closes it if every caller that opened it has closed it. Once closed the translation memory
+     * can be opened again with {@link #open(File)}.
+     *
+     * @throws IOException Thrown if the changes couldn't be written.
+     */
+    public void close() throws IOException {
+        synchronized (OPEN_MEMORIES) {
+            synchronized (this) {
+                if (closed) return;
+                if (--openCount > 0) {
+                    flush();
+                    return;
+                }
+
+                try {
+                    flush();
+                } finally {
+                    closed = true;
+                    OPEN_MEMORIES.remove(name);
+                    lock.release();
+                    logFile.close();
+                    indexFile.close();
+                }
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("The translation memory " + name + " has been closed");
+    }
+
+    /**
+     * @return The number of translations in the translation memory.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private static void write(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private static void read(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            final int count = channel.read(buffer, offset);
+            if (count < 0) throw new IOException("Unexpected end of file");
+            offset += count;
+        }
+    }
+
+    private static byte[] encode(final String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String decode(final byte[] value) {
+        try {
+            return new String(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The differences between the translatable strings of two revisions of a document.
+ */
+public class TranslationStringDelta {
+    private final List<String> addedStrings;
+    private final List<String> removedStrings;
+    private final List<String> unchangedStrings;
+    private final List<StringToNodeCollection> stringToNodeCollections;
+    private final TranslatableStringSnapshot snapshot;
+    private final int reusedBlocks;
+    private final int extractedBlocks;
+
+    /**
+     * @param previous                The snapshot of the previous revision, or null if there is no previous revision.
+     * @param current                 The snapshot of the current revision.
+     * @param stringToNodeCollections The string to node collections for the current revision.
+     * @param reusedBlocks            The number of blocks that were reused from the previous revision.
+     * @param extractedBlocks         The number of blocks that had their strings extracted.
+     */
+    public TranslationStringDelta(final TranslatableStringSnapshot previous, final TranslatableStringSnapshot current,
+            final List<StringToNodeCollection> stringToNodeCollections, final int reusedBlocks, final int extractedBlocks) {
+        if (current == null) throw new IllegalArgumentException("current cannot be null");
+
+        final List<String> previousStrings = previous == null ? Collections.<String>emptyList() : previous.getTranslationStrings();
+        final Set<String> previousStringsSet = new HashSet<String>(previousStrings);
+        final Set<String> currentStringsSet = new HashSet<String>(current.getTranslationStrings());
+
+        final List<String> added = new ArrayList<String>();
+        final List<String> unchanged = new ArrayList<String>();
+        for (final String translationString : current.getTranslationStrings()) {
+            if (previousStringsSet.contains(translationString)) {
+                unchanged.add(translationString);
+            } else {
+                added.add(translationString);
+            }
+        }
+
+        final List<String> removed = new ArrayList<String>();
+        for (final String translationString : previousStrings) {
+            if (!currentStringsSet.contains(translationString)) {
+                removed.add(translationString);
+            }
+        }
+
+        addedStrings = Collections.unmodifiableList(added);
+        removedStrings = Collections.unmodifiableList(removed);
+        unchangedStrings = Collections.unmodifiableList(unchanged);
+        this.stringToNodeCollections = stringToNodeCollections;
+        snapshot = current;
+        this.reusedBlocks = reusedBlocks;
+        this.extractedBlocks = extractedBlocks;
+    }
+
+    /**
+     * @return The strings that are only in the current revision, in the order they appear.
+     */
+    public List<String> getAddedStrings() {
+        return addedStrings;
+    }
+
+    /**
+     * @return The strings that are only in the previous revision, in the order they appeared.
+     */
+    public List<String> getRemovedStrings() {
+        return removedStrings;
+    }
+
+    /**
+     * @return The strings that are in both revisions, in the order they appear in the current revision.
+     */
+    public List<String> getUnchangedStrings() {
+        return unchangedStrings;
+    }
+
+    /**
+     * @return The string to node collections for the current revision, without duplicates.
+     */
+    public List<StringToNodeCollection> getStringToNodeCollections() {
+        return stringToNodeCollections;
+    }
+
+    /**
+     * @return The snapshot of the current revision, which can be used as the previous revision of the next delta.
+     */
+    public TranslatableStringSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public int getReusedBlocks() {
+        return reusedBlocks;
+    }
+
+    public int getExtractedBlocks() {
+        return extractedBlocks;
+    }
+}
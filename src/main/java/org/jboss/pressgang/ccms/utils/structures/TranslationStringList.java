@@ -0,0 +1,134 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A list of translation strings that keeps the order the strings were added in, while also indexing them by their translation
+ * string. This allows existing strings to be found in constant time when removing duplicates.
+ * <p/>
+ * Note: The index is built from the translation string when an item is added, so the translation string of an item shouldn't be
+ * changed while it is in the list.
+ */
+public class TranslationStringList extends AbstractList<StringToNodeCollection> implements RandomAccess {
+    private final List<StringToNodeCollection> items;
+    /**
+     * The first item in the list for each translation string.
+     */
+    private final Map<String, StringToNodeCollection> index;
+
+    public TranslationStringList() {
+        items = new ArrayList<StringToNodeCollection>();
+        index = new HashMap<String, StringToNodeCollection>();
+    }
+
+    public TranslationStringList(final int initialCapacity) {
+        items = new ArrayList<StringToNodeCollection>(initialCapacity);
+        index = new HashMap<String, StringToNodeCollection>(initialCapacity);
+    }
+
+    /**
+     * Find the first item in the list with a specific translation string.
+     *
+     * @param translationString The translation string to look for.
+     * @return The first matching item, or null if no item has the translation string.
+     */
+    public StringToNodeCollection findByTranslationString(final String translationString) {
+        return index.get(translationString);
+    }
+
+    @Override
+    public StringToNodeCollection get(final int i) {
+        return items.get(i);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public void add(final int i, final StringToNodeCollection item) {
+        items.add(i, item);
+        modCount++;
+
+        if (item != null) {
+            // An item that is appended can never come before an item that is already indexed
+            final StringToNodeCollection existing = index.get(item.getTranslationString());
+            if (existing == null || (i < items.size() - 1 && i <= items.indexOf(existing))) {
+                index.put(item.getTranslationString(), item);
+            }
+        }
+    }
+
+    @Override
+    public StringToNodeCollection set(final int i, final StringToNodeCollection item) {
+        final StringToNodeCollection oldItem = items.set(i, item);
+        removeFromIndex(oldItem);
+        if (item != null) {
+            final StringToNodeCollection existing = index.get(item.getTranslationString());
+            if (existing == null || i <= items.indexOf(existing)) {
+                index.put(item.getTranslationString(), item);
+            }
+        }
+
+        return oldItem;
+    }
+
+    @Override
+    public StringToNodeCollection remove(final int i) {
+        final StringToNodeCollection oldItem = items.remove(i);
+        modCount++;
+        removeFromIndex(oldItem);
+
+        return oldItem;
+    }
+
+    @Override
+    public void clear() {
+        items.clear();
+        index.clear();
+        modCount++;
+    }
+
+    /**
+     * Removes an item from the index, and indexes the next item with the same translation string if there is one.
+     */
+    private void removeFromIndex(final StringToNodeCollection item) {
+        if (item == null || index.get(item.getTranslationString()) != item) return;
+
+        index.remove(item.getTranslationString());
+        for (final StringToNodeCollection otherItem : items) {
+            if (otherItem != null && equal(otherItem.getTranslationString(), item.getTranslationString())) {
+                index.put(otherItem.getTranslationString(), otherItem);
+                break;
+            }
+        }
+    }
+
+    private static boolean equal(final String a, final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -25,13 +25,22 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jboss.pressgang.ccms.utils.structures.DocBookVersion;
 import org.jboss.pressgang.ccms.utils.structures.StringToNodeCollection;
+import org.jboss.pressgang.ccms.utils.structures.TranslatableStringLocation;
+import org.jboss.pressgang.ccms.utils.structures.TranslatableStringSnapshot;
+import org.jboss.pressgang.ccms.utils.structures.TranslationStringDelta;
 import org.junit.Test;
 import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 public class DocBookUtilitiesTest {
@@ -121,6 +130,123 @@ public class DocBookUtilitiesTest {
                         "and add its contents to <filename>c:\\sysprep</filename>."));
     }
 
+    @Test
+    public void shouldStreamTheSameTranslatableStringsAsTheDOM() throws Exception {
+        // Given a document with a footnote, a comment and a list nested in a para
+        String xml = "<!DOCTYPE section SYSTEM \"Book.ent\">\n" +
+                "<section>\n" +
+                "\t<title>Installing &PRODUCT;</title>\n" +
+                "\t<para>\n" +
+                "\t\tThe API requires HTTPS \n" +
+                "\t\t<footnote><para>HTTPS is described in <ulink url=\"http://tools.ietf.org/html/rfc2818\">RFC 2818</ulink>.</para></footnote>\n" +
+                "\t\t<!-- Inject: 3737 --> for secure transport:\n" +
+                "\t\t<itemizedlist>\n" +
+                "\t\t\t<listitem><para>Get the <emphasis>certificate</emphasis>.</para></listitem>\n" +
+                "\t\t</itemizedlist>\n" +
+                "\t\tThen import it.\n" +
+                "\t</para>\n" +
+                "\t<programlisting>  keytool -import\n</programlisting>\n" +
+                "</section>";
+        final List<String> expected = new ArrayList<String>();
+        for (final StringToNodeCollection string : DocBookUtilities.getTranslatableStringsV3(XMLUtilities.convertStringToDocument(xml),
+                true)) {
+            expected.add(string.getTranslationString());
+        }
+
+        // When
+        final List<TranslatableStringLocation> locations = new ArrayList<TranslatableStringLocation>();
+        DocBookUtilities.getTranslatableStringsV3(new InputSource(new StringReader(xml)),
+                new TranslatableStringExtractor.TranslatableStringHandler() {
+                    @Override
+                    public void handleTranslatableString(final TranslatableStringLocation translatableString) {
+                        locations.add(translatableString);
+                    }
+                });
+
+        // Then
+        final List<String> strings = new ArrayList<String>();
+        for (final TranslatableStringLocation location : locations) {
+            strings.add(location.getTranslationString());
+        }
+        assertThat(strings, is(expected));
+        assertThat(strings.size(), is(5));
+        assertThat(locations.get(2).getPath(), is("/section/para[1]/itemizedlist[1]/listitem[1]/para[1]"));
+        assertThat(locations.get(3).getTranslationString(), is("Then import it."));
+        assertThat(locations.get(3).getNodeIndex(), is(6));
+        assertThat(locations.get(3).getNodeCount(), is(1));
+    }
+
+    @Test
+    public void shouldReplaceTranslatedStringsWhenATranslationIsInvalid() throws SAXException {
+        // Given a document with three strings, where one of the translations isn't valid XML
+        final Document doc = XMLUtilities.convertStringToDocument(
+                "<section><title>A Title</title><para>Some <emphasis>text</emphasis></para><para>More text</para></section>");
+        final List<StringToNodeCollection> strings = DocBookUtilities.getTranslatableStringsV3(doc, false);
+        final Map<String, String> translations = new HashMap<String, String>();
+        translations.put("A Title", "Un Titre");
+        translations.put("Some <emphasis>text</emphasis>", "Du <emphasis>texte");
+        translations.put("More text", "Plus de &PRODUCT; texte");
+
+        // When
+        DocBookUtilities.replaceTranslatedStrings(doc, translations, strings);
+
+        // Then the valid translations should still be applied
+        assertThat(XMLUtilities.convertNodeToString(doc.getDocumentElement(), true, true, false),
+                is("<section><title>Un Titre</title><para>Some <emphasis>text</emphasis></para><para>Plus de &PRODUCT; texte</para>" +
+                        "</section>"));
+    }
+
+    @Test
+    public void shouldBuildATranslatedDocumentForEachLocale() throws SAXException {
+        // Given a document and the translations for two locales
+        final Document doc = XMLUtilities.convertStringToDocument(
+                "<section><title>A Title</title><para>Some <emphasis>text</emphasis></para></section>");
+        final Map<String, Map<String, String>> localeTranslations = new LinkedHashMap<String, Map<String, String>>();
+        final Map<String, String> frTranslations = new HashMap<String, String>();
+        frTranslations.put("A Title", "Un Titre");
+        frTranslations.put("Some <emphasis>text</emphasis>", "Du <emphasis>texte</emphasis>");
+        localeTranslations.put("fr", frTranslations);
+        final Map<String, String> deTranslations = new HashMap<String, String>();
+        deTranslations.put("A Title", "Ein Titel");
+        localeTranslations.put("de", deTranslations);
+
+        // When
+        final Map<String, Document> translatedDocs = DocBookUtilities.buildTranslatedDocuments(doc, localeTranslations, 2);
+
+        // Then each locale should have its own translated copy, and the source document should be unchanged
+        assertThat(XMLUtilities.convertNodeToString(translatedDocs.get("fr").getDocumentElement(), true, true, false),
+                is("<section><title>Un Titre</title><para>Du <emphasis>texte</emphasis></para></section>"));
+        assertThat(XMLUtilities.convertNodeToString(translatedDocs.get("de").getDocumentElement(), true, true, false),
+                is("<section><title>Ein Titel</title><para>Some <emphasis>text</emphasis></para></section>"));
+        assertThat(XMLUtilities.convertNodeToString(doc.getDocumentElement(), true, true, false),
+                is("<section><title>A Title</title><para>Some <emphasis>text</emphasis></para></section>"));
+    }
+
+    @Test
+    public void shouldOnlyExtractTheChangedBlocksOfADocument() throws SAXException {
+        // Given a snapshot of a document and a new revision where one paragraph has changed
+        final Document previous = XMLUtilities.convertStringToDocument(
+                "<section><title>A Title</title><para>First para</para><para>Second para</para></section>");
+        final TranslatableStringSnapshot snapshot = DocBookUtilities.getTranslatableStringsSnapshot(previous);
+        final Document current = XMLUtilities.convertStringToDocument(
+                "<section><title>A Title</title><para>First para</para><para>Changed para</para></section>");
+
+        // When
+        final TranslationStringDelta delta = DocBookUtilities.getTranslatableStringsDelta(snapshot, current);
+
+        // Then only the changed paragraph should have been extracted, and the strings should match a full extraction
+        assertThat(delta.getAddedStrings(), is(Arrays.asList("Changed para")));
+        assertThat(delta.getRemovedStrings(), is(Arrays.asList("Second para")));
+        assertThat(delta.getUnchangedStrings(), is(Arrays.asList("A Title", "First para")));
+        assertThat(delta.getExtractedBlocks(), is(1));
+        final List<StringToNodeCollection> expected = DocBookUtilities.getTranslatableStringsV3(current, false);
+        assertThat(delta.getStringToNodeCollections().size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(delta.getStringToNodeCollections().get(i).getTranslationString(), is(expected.get(i).getTranslationString()));
+            assertThat(delta.getStringToNodeCollections().get(i).getNodeCollections(), is(expected.get(i).getNodeCollections()));
+        }
+    }
+
     public static Document getXMLEntityTestDoc() throws SAXException {
         final StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("<section>\n");
@@ -188,4 +314,22 @@ public class DocBookUtilitiesTest {
     public void testMissingDefaultEntitiesFound() throws SAXException {
         assertFalse(DocBookUtilities.allEntitiesAccountedFor(getXMLEntityTestDoc(), null, "<!ENTITY PRODUCT \"A Test\">"));
     }
+
+    @Test
+    public void shouldLoadTheDocBookEntityTable() {
+        // Given the standard DocBook entities
+
+        // When looking up entities and generating the declarations
+        final String declarations = DocBookUtilities.getDocBookEntitiesString();
+
+        // Then the entities should be found and declared in their original order
+        assertThat(DocBookUtilities.getDocBookEntities().get("euro"), is("&#x20AC;"));
+        assertThat(DocBookUtilities.getDocBookEntities().get("tdot"), is(" &#x020DB;"));
+        assertFalse(DocBookUtilities.getDocBookEntities().contains("PRODUCT"));
+        assertTrue(DocBookUtilities.DOCBOOK_ENTITIES.containsKey("wedgeq"));
+        assertThat(DocBookUtilities.DOCBOOK_ENTITIES.size(), is(DocBookUtilities.getDocBookEntities().size()));
+        assertTrue(declarations.startsWith("<!ENTITY euro \"&#x20AC;\">\n<!ENTITY cularr \"&#x021B6;\">\n"));
+        assertTrue(declarations.endsWith("<!ENTITY wedgeq \"&#x02259;\">"));
+        assertThat(DocBookUtilities.DOCBOOK_ENTITIES_STRING, is(declarations));
+    }
 }
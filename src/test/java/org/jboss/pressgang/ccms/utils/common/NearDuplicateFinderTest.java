@@ -0,0 +1,75 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.common;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class NearDuplicateFinderTest {
+
+    @Test
+    public void shouldOnlyFindTextsThatAreNearDuplicates() {
+        // Given two texts that only differ by a couple of words and a text that is different
+        final Map<Integer, String> texts = new LinkedHashMap<Integer, String>();
+        texts.put(1, "To configure the server, open the standalone.xml file in a text editor and set the port attribute of the "
+                + "http listener to the port that the server should listen on. Then restart the server for the change to take effect.");
+        texts.put(2, "Install the package using yum, and then start the service using systemctl. The service will start automatically "
+                + "the next time the system boots.");
+        texts.put(3, "To configure the server, open the standalone.xml file in an editor and set the port attribute of the "
+                + "http listener to the port that the server should listen on. Then restart the server for the changes to take effect.");
+
+        // When the duplicates are found
+        final List<NearDuplicateFinder.Duplicate<Integer>> duplicates = new NearDuplicateFinder(0.9).findDuplicates(texts, 2);
+
+        // Then only the similar texts should be found
+        assertThat(duplicates.size(), is(1));
+        assertThat(duplicates.get(0).getFirst(), is(1));
+        assertThat(duplicates.get(0).getSecond(), is(3));
+        assertThat(duplicates.get(0).getSimilarity() >= 0.9, is(true));
+    }
+
+    @Test
+    public void shouldCompareTopicsByTheirText() throws Exception {
+        // Given two topics with the same text but different markup, and a topic with different text
+        final String text = "To configure the server, open the standalone.xml file in a text editor and set the port attribute of the "
+                + "http listener.";
+        final Map<String, Document> topics = new LinkedHashMap<String, Document>();
+        topics.put("first", XMLUtilities.convertStringToDocument("<section><para>" + text + "</para></section>"));
+        topics.put("second", XMLUtilities.convertStringToDocument("<section><para><emphasis role=\"bold\">" + text.substring(0, 20)
+                + "</emphasis>" + text.substring(20) + "</para></section>"));
+        topics.put("third", XMLUtilities.convertStringToDocument("<section><para>Install the package using yum, and then start the "
+                + "service.</para></section>"));
+
+        // When the duplicates are found
+        final List<NearDuplicateFinder.Duplicate<String>> duplicates = new NearDuplicateFinder(0.9).findDuplicateTopics(topics, 2);
+
+        // Then the markup should be ignored
+        assertThat(duplicates.size(), is(1));
+        assertThat(duplicates.get(0).getFirst(), is("first"));
+        assertThat(duplicates.get(0).getSecond(), is("second"));
+        assertThat(duplicates.get(0).getSimilarity(), is(1.0));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.common;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StringUtilitiesTest {
+
+    @Test
+    public void shouldOnlyReturnEditDistancesWithinTheMaximumDistance() {
+        // Given two strings that are a substitution and a transposition apart
+        final String source = "Configure the server";
+        final String target = "Configure teh servre";
+
+        // When the distances are calculated
+        final int levenshtein = StringUtilities.getLevenshteinDistance(source, target, 4);
+        final int damerauLevenshtein = StringUtilities.getDamerauLevenshteinDistance(source, target, 2);
+
+        // Then the distances should only be returned if they are within the maximum distance
+        assertThat(levenshtein, is(4));
+        assertThat(StringUtilities.getLevenshteinDistance(source, target, 3), is(-1));
+        assertThat(damerauLevenshtein, is(2));
+        assertThat(StringUtilities.getDamerauLevenshteinDistance(source, target), is(2));
+        assertThat(StringUtilities.getDamerauLevenshteinDistance(source, target, 1), is(-1));
+        assertThat(StringUtilities.similarDamerauLevenshtein(source, target, 0.9), is(0.9));
+        assertThat(StringUtilities.similarLevenshtein(source, target, 0.9), is(-1.0));
+    }
+
+    @Test
+    public void shouldCalculateTheSameDamerauLevenshteinDistanceAsTheFullMatrixForLongStrings() {
+        // Given long strings that have been edited with substitutions, insertions, deletions and transpositions
+        final Random random = new Random(49);
+        for (int i = 0; i < 10; i++) {
+            final StringBuilder source = new StringBuilder();
+            for (int j = 0; j < 2000; j++) {
+                source.append((char) ('a' + random.nextInt(4)));
+            }
+            final StringBuilder target = new StringBuilder(source);
+            for (int j = 0; j < 20 * i; j++) {
+                final int position = random.nextInt(target.length() - 1);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        target.setCharAt(position, (char) ('a' + random.nextInt(4)));
+                        break;
+                    case 1:
+                        target.insert(position, (char) ('a' + random.nextInt(4)));
+                        break;
+                    case 2:
+                        target.deleteCharAt(position);
+                        break;
+                    default:
+                        final char c = target.charAt(position);
+                        target.setCharAt(position, target.charAt(position + 1));
+                        target.setCharAt(position + 1, c);
+                }
+            }
+
+            // When the distance is calculated
+            final int distance = StringUtilities.getDamerauLevenshteinDistance(source.toString(), target.toString());
+
+            // Then it should match the distance calculated from the full matrix
+            final int expected = getFullMatrixDamerauLevenshteinDistance(source.toString(), target.toString());
+            assertThat(distance, is(expected));
+            assertThat(StringUtilities.getDamerauLevenshteinDistance(source.toString(), target.toString(), expected), is(expected));
+            if (expected > 0) {
+                assertThat(StringUtilities.getDamerauLevenshteinDistance(source.toString(), target.toString(), expected - 1), is(-1));
+            }
+        }
+    }
+
+    /**
+     * The original implementation of the Damerau-Levenshtein distance, which calculates the whole matrix.
+     */
+    private static int getFullMatrixDamerauLevenshteinDistance(final String source, final String target) {
+        final int[][] score = new int[source.length() + 2][target.length() + 2];
+
+        final int INF = source.length() + target.length();
+        score[0][0] = INF;
+        for (int i = 0; i <= source.length(); i++) {
+            score[i + 1][1] = i;
+            score[i + 1][0] = INF;
+        }
+        for (int j = 0; j <= target.length(); j++) {
+            score[1][j + 1] = j;
+            score[0][j + 1] = INF;
+        }
+
+        final Map<Character, Integer> sd = new HashMap<Character, Integer>();
+        for (final char letter : (source + target).toCharArray()) {
+            sd.put(letter, 0);
+        }
+
+        for (int i = 1; i <= source.length(); i++) {
+            int DB = 0;
+            for (int j = 1; j <= target.length(); j++) {
+                final int i1 = sd.get(target.charAt(j - 1));
+                final int j1 = DB;
+
+                if (source.charAt(i - 1) == target.charAt(j - 1)) {
+                    score[i + 1][j + 1] = score[i][j];
+                    DB = j;
+                } else {
+                    score[i + 1][j + 1] = Math.min(score[i][j], Math.min(score[i + 1][j], score[i][j + 1])) + 1;
+                }
+
+                score[i + 1][j + 1] = Math.min(score[i + 1][j + 1], score[i1][j1] + (i - i1 - 1) + 1 + (j - j1 - 1));
+            }
+
+            sd.put(source.charAt(i - 1), i);
+        }
+
+        return score[source.length() + 1][target.length() + 1];
+    }
+}
@@ -0,0 +1,274 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.common;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.pressgang.ccms.utils.structures.ResourcePack;
+import org.jboss.pressgang.ccms.utils.structures.ValidationError;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class XMLValidatorTest {
+    private static final String DTD = "<!ELEMENT section (title, para*)>\n<!ELEMENT title (#PCDATA)>\n<!ELEMENT para (#PCDATA)>";
+    private static final String XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+            "<xs:element name=\"section\"><xs:complexType><xs:sequence>\n" +
+            "<xs:element name=\"title\" type=\"xs:string\"/><xs:element ref=\"para\" maxOccurs=\"unbounded\"/>\n" +
+            "</xs:sequence></xs:complexType></xs:element>\n" +
+            "<xs:element name=\"para\" type=\"xs:string\"/>\n" +
+            "</xs:schema>";
+    private static final String ID_XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+            "<xs:element name=\"section\"><xs:complexType><xs:sequence>\n" +
+            "<xs:element name=\"title\" type=\"xs:string\"/><xs:element ref=\"para\" maxOccurs=\"unbounded\"/>\n" +
+            "</xs:sequence></xs:complexType></xs:element>\n" +
+            "<xs:element name=\"para\"><xs:complexType><xs:simpleContent><xs:extension base=\"xs:string\">\n" +
+            "<xs:attribute name=\"id\" type=\"xs:ID\"/>\n" +
+            "</xs:extension></xs:simpleContent></xs:complexType></xs:element>\n" +
+            "</xs:schema>";
+    private static final String INVALID_XML = "<section>\n" +
+            "<title>Title</title>\n" +
+            "<para>Some <emphasis>text</emphasis></para>\n" +
+            "<para>Some more text</para>\n" +
+            "<para>Some <filename>file</filename> and a <command>command</command></para>\n" +
+            "</section>";
+
+    @Test
+    public void shouldValidateValidXML() throws Exception {
+        // Given some valid xml
+        final String xml = "<section>\n<title>Title</title>\n<para>Some text</para>\n</section>";
+
+        // When validating the xml
+        final XMLValidator validator = new XMLValidator(false, 0);
+        final boolean valid = validator.validate(XMLValidator.ValidationMethod.DTD, xml, "test.dtd", DTD.getBytes("UTF-8"), "section");
+
+        // Then it should be valid and have no errors
+        assertTrue(valid);
+        assertTrue(validator.getErrors().isEmpty());
+    }
+
+    @Test
+    public void shouldStopOnFirstErrorByDefault() throws Exception {
+        // Given a validator with the default settings
+        final XMLValidator validator = new XMLValidator();
+
+        // When validating xml with multiple errors
+        final boolean valid = validator.validate(XMLValidator.ValidationMethod.DTD, INVALID_XML, "test.dtd", DTD.getBytes("UTF-8"),
+                "section");
+
+        // Then only the first error should be reported
+        assertFalse(valid);
+        assertThat(validator.getErrors().size(), is(1));
+        assertThat(validator.getErrors().get(0).getLineNumber(), is(3));
+    }
+
+    @Test
+    public void shouldCollectAllErrorsWithLineNumbers() throws Exception {
+        // Given a validator that collects all errors
+        final XMLValidator validator = new XMLValidator(false, 0);
+
+        // When validating xml with multiple errors
+        final boolean valid = validator.validate(XMLValidator.ValidationMethod.DTD, INVALID_XML, "test.dtd", DTD.getBytes("UTF-8"),
+                "section");
+
+        // Then every error should be reported, relative to the original xml
+        assertFalse(valid);
+        final List<ValidationError> errors = validator.getErrors();
+        assertTrue(errors.size() >= 3);
+        assertThat(errors.get(0).getLineNumber(), is(3));
+        assertThat(errors.get(errors.size() - 1).getLineNumber(), is(5));
+    }
+
+    @Test
+    public void shouldAbortOnceErrorBudgetIsUsed() throws Exception {
+        // Given a validator that collects up to 2 errors
+        final XMLValidator validator = new XMLValidator(false, 2);
+
+        // When validating xml with more than 2 errors
+        final boolean valid = validator.validate(XMLValidator.ValidationMethod.DTD, INVALID_XML, "test.dtd", DTD.getBytes("UTF-8"),
+                "section");
+
+        // Then only 2 errors should be reported
+        assertFalse(valid);
+        assertThat(validator.getErrors().size(), is(2));
+    }
+
+    @Test
+    public void shouldOnlyRevalidateChangedElements() throws Exception {
+        // Given a schema where paras can be validated on their own
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("test.xsd", XSD.getBytes("UTF-8"));
+        final ResourcePack resources = ResourcePack.fromMap(files);
+        // and a validator that records the root element of everything it validates
+        final List<String> validatedRoots = new ArrayList<String>();
+        final XMLValidator validator = new XMLValidator(false, 0) {
+            @Override
+            public boolean validate(final ValidationMethod method, final String xml, final String fileName, final String entities,
+                    final String rootEleName, final ResourcePack resources) {
+                validatedRoots.add(rootEleName);
+                return super.validate(method, xml, fileName, entities, rootEleName, resources);
+            }
+        };
+        validator.setContextFreeElements(Arrays.asList("para"));
+        // and a document that has already been validated
+        final Document original = XMLUtilities.convertStringToDocument(
+                "<section><title>Title</title><para>First</para><para>Second</para></section>");
+        assertTrue(validator.validateIncrementally(XMLValidator.ValidationMethod.XSD, null, original, "test.xsd", null, resources));
+        assertThat(validatedRoots, is((List<String>) Arrays.asList("section")));
+
+        // When a single para is changed
+        final Document valid = XMLUtilities.convertStringToDocument(
+                "<section><title>Title</title><para>First</para><para>Changed</para></section>");
+        final Document invalid = XMLUtilities.convertStringToDocument(
+                "<section><title>Title</title><para>First</para><para>Changed <emphasis>text</emphasis></para></section>");
+        validatedRoots.clear();
+        final boolean validResult = validator.validateIncrementally(XMLValidator.ValidationMethod.XSD, original, valid, "test.xsd",
+                null, resources);
+        final boolean invalidResult = validator.validateIncrementally(XMLValidator.ValidationMethod.XSD, original, invalid, "test.xsd",
+                null, resources);
+
+        // Then only the changed para should have been validated when it was valid
+        assertTrue(validResult);
+        assertFalse(invalidResult);
+        assertFalse(validator.getErrors().isEmpty());
+        // and the full document should have been validated when it wasn't
+        assertThat(validatedRoots, is((List<String>) Arrays.asList("para", "para", "section")));
+    }
+
+    @Test
+    public void shouldFullyRevalidateWhenIdsChange() throws Exception {
+        // Given a schema where ids must be unique and paras can be validated on their own
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("test.xsd", ID_XSD.getBytes("UTF-8"));
+        final ResourcePack resources = ResourcePack.fromMap(files);
+        final XMLValidator validator = new XMLValidator(false, 0);
+        validator.setContextFreeElements(Arrays.asList("para"));
+        // and a document that has already been validated
+        final Document original = XMLUtilities.convertStringToDocument(
+                "<section><title>Title</title><para id=\"first\">First</para><para>Second</para></section>");
+        assertTrue(validator.validateIncrementally(XMLValidator.ValidationMethod.XSD, null, original, "test.xsd", null, resources));
+
+        // When a para is changed to use an id that already exists in another para
+        final Document changed = XMLUtilities.convertStringToDocument(
+                "<section><title>Title</title><para id=\"first\">First</para><para id=\"first\">Second</para></section>");
+        final boolean valid = validator.validateIncrementally(XMLValidator.ValidationMethod.XSD, original, changed, "test.xsd", null,
+                resources);
+
+        // Then the full document should have been validated and the duplicate id found
+        assertFalse(valid);
+    }
+
+    @Test
+    public void shouldNotReuseVerdictsFromADifferentSchema() throws Exception {
+        // Given a document that is valid against a schema
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("test.xsd", XSD.getBytes("UTF-8"));
+        final XMLValidator validator = new XMLValidator(false, 0);
+        final Document doc = XMLUtilities.convertStringToDocument("<section><title>Title</title><para>First</para></section>");
+        assertTrue(validator.validateIncrementally(XMLValidator.ValidationMethod.XSD, null, doc, "test.xsd", null,
+                ResourcePack.fromMap(files)));
+
+        // When the schema is changed so that the document is no longer valid
+        files.put("test.xsd", XSD.replace("name=\"para\"", "name=\"simpara\"").getBytes("UTF-8"));
+        final boolean valid = validator.validateIncrementally(XMLValidator.ValidationMethod.XSD, null, doc, "test.xsd", null,
+                ResourcePack.fromMap(files));
+
+        // Then the document should be validated against the new schema
+        assertFalse(valid);
+    }
+
+    @Test
+    public void shouldFullyRevalidateWhenChangesAreNotLocal() throws Exception {
+        // Given a validator where paras can be validated on their own
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("test.xsd", XSD.getBytes("UTF-8"));
+        final ResourcePack resources = ResourcePack.fromMap(files);
+        final XMLValidator validator = new XMLValidator(false, 0);
+        validator.setContextFreeElements(Arrays.asList("para"));
+        // and a document that has already been validated
+        final Document original = XMLUtilities.convertStringToDocument(
+                "<section><title>Title</title><para>First</para></section>");
+        assertTrue(validator.validateIncrementally(XMLValidator.ValidationMethod.XSD, null, original, "test.xsd", null, resources));
+
+        // When the para is replaced by an element that isn't allowed
+        final Document changed = XMLUtilities.convertStringToDocument(
+                "<section><title>Title</title><note>First</note></section>");
+        final boolean valid = validator.validateIncrementally(XMLValidator.ValidationMethod.XSD, original, changed, "test.xsd", null,
+                resources);
+
+        // Then the full document should have been validated and found to be invalid
+        assertFalse(valid);
+    }
+
+    @Test
+    public void shouldValidateFromStream() throws Exception {
+        // Given a resource pack containing the DTD
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("test.dtd", DTD.getBytes("UTF-8"));
+        final ResourcePack resources = ResourcePack.fromMap(files);
+
+        // When validating the invalid xml from a stream
+        final XMLValidator validator = new XMLValidator(false, 0);
+        final boolean valid = validator.validate(XMLValidator.ValidationMethod.DTD, new ByteArrayInputStream(INVALID_XML.getBytes(
+                "UTF-8")), "test.dtd", null, null, resources);
+
+        // Then the errors should be found at the same positions as when validating a string
+        assertFalse(valid);
+        assertThat(validator.getErrors().get(0).getLineNumber(), is(3));
+        assertThat(validator.getErrors().get(validator.getErrors().size() - 1).getLineNumber(), is(5));
+    }
+
+    @Test
+    public void shouldValidateFromFileWithLargeHeader() throws Exception {
+        // Given a resource pack containing the DTD
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("test.dtd", DTD.getBytes("UTF-8"));
+        final ResourcePack resources = ResourcePack.fromMap(files);
+        // and a file with a preamble and a large comment before the root element
+        final StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!--");
+        for (int i = 0; i < 2000; i++) {
+            xml.append(" padding");
+        }
+        xml.append(" -->\n<section>\n<title>Title</title>\n<para>Some text</para>\n</section>");
+        final File file = File.createTempFile("validate", ".xml");
+        file.deleteOnExit();
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(xml.toString().getBytes("UTF-8"));
+        out.close();
+
+        // When validating the file
+        final XMLValidator validator = new XMLValidator(false, 0);
+        final boolean valid = validator.validate(XMLValidator.ValidationMethod.DTD, file, "test.dtd", null, null, resources);
+
+        // Then the file should be valid
+        assertTrue(valid);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.common;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.pressgang.ccms.utils.structures.ResourcePack;
+import org.junit.Test;
+
+public class XSLTPipelineTest {
+    private static final String SECTION_XSL = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\n" +
+            "<xsl:output method=\"xml\" omit-xml-declaration=\"yes\"/>\n" +
+            "<xsl:param name=\"class\"/>\n" +
+            "<xsl:template match=\"/section\"><div class=\"{$class}\"><xsl:apply-templates/></div></xsl:template>\n" +
+            "<xsl:template match=\"para\"><p><xsl:apply-templates/></p></xsl:template>\n" +
+            "</xsl:stylesheet>";
+    private static final String HTML_XSL = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\n" +
+            "<xsl:output method=\"xml\" omit-xml-declaration=\"yes\"/>\n" +
+            "<xsl:template match=\"/\"><html><body><xsl:copy-of select=\"*\"/></body></html></xsl:template>\n" +
+            "</xsl:stylesheet>";
+    private static final String XML = "<section><para>First</para><para>Second</para></section>";
+
+    @Test
+    public void shouldProduceTheSameOutputAsRunningEachStylesheetInSequence() throws Exception {
+        // Given a pipeline with two stages
+        final ResourcePack resources = ResourcePack.fromMap(new HashMap<String, byte[]>());
+        final Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("class", "section");
+        final XSLTPipeline pipeline = XSLTUtilities.newPipeline()
+                .addStage(SECTION_XSL, "http://example.com/section.xsl", resources, parameters)
+                .addStage(HTML_XSL, "http://example.com/html.xsl", resources, null);
+
+        // When running some xml through the pipeline
+        final StringWriter writer = new StringWriter();
+        pipeline.transform(new StreamSource(new StringReader(XML)), new StreamResult(writer));
+
+        // Then the output should be the same as running the stylesheets one after the other
+        final String sectionOutput = XSLTUtilities.transformXML(XML, SECTION_XSL, "http://example.com/section.xsl", resources, parameters);
+        final String expectedOutput = XSLTUtilities.transformXML(sectionOutput, HTML_XSL, "http://example.com/html.xsl", resources,
+                null);
+        assertThat(writer.toString(), is(expectedOutput));
+        assertThat(writer.toString(), is("<html><body><div class=\"section\"><p>First</p><p>Second</p></div></body></html>"));
+        // and each stage should have recorded the run
+        assertThat(pipeline.getStages().get(0).getRunCount(), is(1L));
+        assertThat(pipeline.getStages().get(1).getRunCount(), is(1L));
+    }
+}
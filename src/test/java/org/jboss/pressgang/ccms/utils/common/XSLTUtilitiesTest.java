@@ -0,0 +1,276 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.common;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.pressgang.ccms.utils.structures.ResourcePack;
+import org.jboss.pressgang.ccms.utils.structures.TransformResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class XSLTUtilitiesTest {
+    private static final String XSL_SYSTEM_ID = "http://docbook.sourceforge.net/release/xsl/current/html/docbook.xsl";
+    private static final String COMMON_XSL_SYSTEM_ID = "http://docbook.sourceforge.net/release/xsl/current/html/common.xsl";
+    private static final String XSL = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\n" +
+            "<xsl:import href=\"common.xsl\"/>\n" +
+            "<xsl:output method=\"xml\" omit-xml-declaration=\"yes\"/>\n" +
+            "<xsl:template match=\"/section\"><div><xsl:apply-templates/></div></xsl:template>\n" +
+            "</xsl:stylesheet>";
+    private static final String COMMON_XSL = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\n" +
+            "<xsl:param name=\"prefix\"/>\n" +
+            "<xsl:template match=\"para\"><p><xsl:value-of select=\"$prefix\"/><xsl:apply-templates/></p></xsl:template>\n" +
+            "</xsl:stylesheet>";
+    private static final String XML = "<section><para>First</para><para>Second</para></section>";
+    private static final String HTML = "<div><p>First</p><p>Second</p></div>";
+
+    @Before
+    public void setUp() {
+        XSLTUtilities.getTemplatesCache().invalidateAll();
+    }
+
+    @After
+    public void tearDown() {
+        XSLTUtilities.setTransletCacheDirectory(null);
+        XSLTUtilities.getTemplatesCache().invalidateAll();
+    }
+
+    @Test
+    public void shouldReloadCompiledTransletsFromTheCacheDirectory() throws Exception {
+        // Given a directory to cache compiled translets in
+        final File directory = File.createTempFile("translet", "cache");
+        directory.delete();
+        XSLTUtilities.setTransletCacheDirectory(directory);
+        try {
+            // When transforming some xml, and then transforming it again once the compiled stylesheet has been removed from memory
+            final String compiledOutput = XSLTUtilities.transformXML(XML, XSL, XSL_SYSTEM_ID, createResources(), null);
+            XSLTUtilities.invalidateTemplates(XSL_SYSTEM_ID);
+            final String reloadedOutput = XSLTUtilities.transformXML(XML, XSL, XSL_SYSTEM_ID, createResources(), null);
+
+            // Then both transforms should produce the expected output
+            assertThat(compiledOutput, is(HTML));
+            assertThat(reloadedOutput, is(HTML));
+            // and only the completed translet directory should have been kept
+            final File[] translets = directory.listFiles();
+            assertThat(translets.length, is(1));
+            assertTrue(translets[0].isDirectory());
+            assertThat(translets[0].getName().endsWith(".tmp"), is(false));
+        } finally {
+            FileUtilities.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void shouldFallBackToTheInterpretiveProcessorWhenTransletsCantBeCompiled() throws Exception {
+        // Given a translet cache directory that can't be written to, because it is a file
+        final File directory = File.createTempFile("translet", "cache");
+        directory.deleteOnExit();
+        XSLTUtilities.setTransletCacheDirectory(directory);
+
+        // When transforming some xml
+        final String output = XSLTUtilities.transformXML(XML, XSL, XSL_SYSTEM_ID, createResources(), null);
+
+        // Then the interpretive processor should have been used to produce the output
+        assertThat(output, is(HTML));
+        assertTrue(directory.isFile());
+    }
+
+    @Test
+    public void shouldNotCompileTransletsThatHaveAlreadyFailed() throws Exception {
+        // Given a translet cache directory that records a previous compile failure for the stylesheet
+        final File directory = File.createTempFile("translet", "cache");
+        directory.delete();
+        directory.mkdirs();
+        try {
+            final ResourcePack resources = createResources();
+            final File failureMarker = new File(directory, XSLTUtilities.getTransletKey(XSL, resources)
+                    + XSLTUtilities.COMPILE_FAILURE_SUFFIX);
+            FileUtilities.saveFile(failureMarker, XSL_SYSTEM_ID, "UTF-8");
+            XSLTUtilities.setTransletCacheDirectory(directory);
+
+            // When transforming some xml
+            final String output = XSLTUtilities.transformXML(XML, XSL, XSL_SYSTEM_ID, resources, null);
+
+            // Then the interpretive processor should have been used without trying to compile a translet
+            assertThat(output, is(HTML));
+            assertThat(directory.listFiles().length, is(1));
+            assertTrue(failureMarker.exists());
+        } finally {
+            FileUtilities.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void shouldTransformADocumentToAStream() throws Exception {
+        // Given a document
+        final Document doc = XMLUtilities.convertStringToDocument(XML);
+
+        // When transforming the document to a stream
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XSLTUtilities.transformXML(doc, XSL, XSL_SYSTEM_ID, createResources(), null, outputStream);
+
+        // Then the output should be the same as the string based transform
+        assertThat(outputStream.toString("UTF-8"), is(XSLTUtilities.transformXML(XML, XSL, XSL_SYSTEM_ID, createResources(), null)));
+    }
+
+    @Test
+    public void shouldTransformASourceToAWriter() throws Exception {
+        // Given a stream source
+        final Source source = new StreamSource(new StringReader(XML));
+
+        // When transforming the source to a writer
+        final StringWriter writer = new StringWriter();
+        XSLTUtilities.transformXML(source, XSL, XSL_SYSTEM_ID, createResources(), null, writer);
+
+        // Then the output should be the same as the string based transform
+        assertThat(writer.toString(), is(XSLTUtilities.transformXML(XML, XSL, XSL_SYSTEM_ID, createResources(), null)));
+    }
+
+    @Test
+    public void shouldTransformASourceToAContentHandler() throws Exception {
+        // Given a content handler that serialises the events it receives
+        final TransformerHandler serialiser = ((SAXTransformerFactory) TransformerFactory.newInstance()).newTransformerHandler();
+        serialiser.getTransformer().setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        final StringWriter writer = new StringWriter();
+        serialiser.setResult(new StreamResult(writer));
+
+        // When transforming a document to the content handler
+        XSLTUtilities.transformXML(new DOMSource(XMLUtilities.convertStringToDocument(XML)), XSL, XSL_SYSTEM_ID, createResources(),
+                null, serialiser);
+
+        // Then the events should match the output of the string based transform
+        assertThat(writer.toString(), is(XSLTUtilities.transformXML(XML, XSL, XSL_SYSTEM_ID, createResources(), null)));
+    }
+
+    @Test
+    public void shouldReturnBatchResultsInTheSameOrderAsTheInput() throws Exception {
+        // Given a batch of different documents
+        final List<String> xmls = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            xmls.add("<section><para>Para " + i + "</para></section>");
+        }
+
+        // When transforming the batch using multiple threads
+        final List<TransformResult> results = XSLTUtilities.transformXMLBatch(xmls, XSL, XSL_SYSTEM_ID, createResources(), null, 3);
+
+        // Then each result should be the output for the document at the same position
+        assertThat(results.size(), is(20));
+        for (int i = 0; i < 20; i++) {
+            assertThat(results.get(i).getOutput(), is("<div><p>Para " + i + "</p></div>"));
+        }
+    }
+
+    @Test
+    public void shouldContinueTheBatchAfterAnItemFails() throws Exception {
+        // Given a batch where the middle document isn't well formed
+        final List<String> xmls = Arrays.asList(XML, "<section><para>Broken</section>", XML, XML);
+
+        // When transforming the batch on a single thread, so the same Transformer is used for every document
+        final List<TransformResult> results = XSLTUtilities.transformXMLBatch(xmls, XSL, XSL_SYSTEM_ID, createResources(), null, 1);
+
+        // Then only the broken document should have failed
+        assertTrue(results.get(0).isSuccessful());
+        assertFalse(results.get(1).isSuccessful());
+        assertNull(results.get(1).getOutput());
+        // and the documents after it should have been transformed correctly
+        assertThat(results.get(2).getOutput(), is(HTML));
+        assertThat(results.get(3).getOutput(), is(HTML));
+    }
+
+    @Test
+    public void shouldNotLeakParametersBetweenBatchItems() throws Exception {
+        // Given some global parameters
+        final Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("prefix", "- ");
+
+        // When transforming a batch with the parameters, and then a batch without them using the same stylesheet
+        final List<TransformResult> withParameters = XSLTUtilities.transformXMLBatch(Arrays.asList(XML, XML, XML), XSL, XSL_SYSTEM_ID,
+                createResources(), parameters, 1);
+        final List<TransformResult> withoutParameters = XSLTUtilities.transformXMLBatch(Arrays.asList(XML, XML), XSL, XSL_SYSTEM_ID,
+                createResources(), null, 1);
+
+        // Then every item that was given the parameters should have used them, after the Transformer was reset
+        for (final TransformResult result : withParameters) {
+            assertThat(result.getOutput(), is("<div><p>- First</p><p>- Second</p></div>"));
+        }
+        // and the items without them should use the defaults
+        for (final TransformResult result : withoutParameters) {
+            assertThat(result.getOutput(), is(HTML));
+        }
+    }
+
+    @Test
+    public void shouldReuseParsedModulesBetweenEntryStylesheets() throws Exception {
+        // Given resources that count how many times the common module is read
+        final Map<String, ByteBuffer> files = new HashMap<String, ByteBuffer>();
+        files.put(COMMON_XSL_SYSTEM_ID, ByteBuffer.wrap(COMMON_XSL.getBytes("UTF-8")));
+        final AtomicInteger commonReads = new AtomicInteger();
+        final ResourcePack resources = new ResourcePack(files) {
+            @Override
+            public InputStream getInputStream(final String name) {
+                if (COMMON_XSL_SYSTEM_ID.equals(name)) {
+                    commonReads.incrementAndGet();
+                }
+                return super.getInputStream(name);
+            }
+        };
+        XSLTUtilities.clearStylesheetModuleCache();
+
+        // When compiling two different entry stylesheets that both import the common module
+        XSLTUtilities.getTemplates(XSL, XSL_SYSTEM_ID, resources);
+        XSLTUtilities.getTemplates(XSL.replace("<div>", "<div class=\"chunk\">"),
+                "http://docbook.sourceforge.net/release/xsl/current/html/chunk.xsl", resources);
+
+        // Then the common module should only have been read and parsed once
+        assertThat(commonReads.get(), is(1));
+    }
+
+    private static ResourcePack createResources() throws Exception {
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put(COMMON_XSL_SYSTEM_ID, COMMON_XSL.getBytes("UTF-8"));
+        return ResourcePack.fromMap(files);
+    }
+}
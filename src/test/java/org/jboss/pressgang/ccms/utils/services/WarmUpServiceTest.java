@@ -0,0 +1,106 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.services;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import javax.xml.validation.Schema;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.jboss.pressgang.ccms.utils.common.XMLValidator;
+import org.jboss.pressgang.ccms.utils.structures.ResourcePack;
+import org.junit.Test;
+
+public class WarmUpServiceTest {
+    private static final String XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+            "<xs:element name=\"section\" type=\"xs:string\"/>\n" +
+            "</xs:schema>";
+
+    @Test
+    public void shouldPrepareEachArtifactAndReportFailures() throws Exception {
+        // Given a manifest with a schema, and a custom artifact that fails
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("warmup.xsd", XSD.getBytes("UTF-8"));
+        final ResourcePack resources = ResourcePack.fromMap(files);
+        final WarmUpManifest manifest = new WarmUpManifest()
+                .addSchema(XMLValidator.ValidationMethod.XSD, "warmup.xsd", resources)
+                .addArtifact("Broken", new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        throw new IllegalStateException("Broken artifact");
+                    }
+                });
+
+        // When the warm up is run
+        final WarmUpService service = WarmUpService.start(manifest, 2);
+        final boolean success = service.awaitAll();
+
+        // Then the schema should have been compiled and cached
+        assertTrue(service.await("Schema warmup.xsd"));
+        final Schema schema = XMLValidator.getSchema(XMLValidator.ValidationMethod.XSD, "warmup.xsd", resources);
+        assertSame(schema, XMLValidator.getSchema(XMLValidator.ValidationMethod.XSD, "warmup.xsd", ResourcePack.fromMap(files)));
+        // and the failure should have been reported
+        assertFalse(success);
+        assertFalse(service.await("Broken"));
+        assertThat(service.getFailedCount(), is(1));
+        assertThat(service.getCompletedCount(), is(2));
+        assertTrue(service.isDone());
+        assertThat(service.getTimings().size(), is(2));
+    }
+
+    @Test
+    public void shouldStopWaitingForCancelledArtifacts() throws Exception {
+        // Given a warm up with one thread that is busy, and an artifact queued behind it
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final WarmUpManifest manifest = new WarmUpManifest()
+                .addArtifact("Slow", new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        started.countDown();
+                        release.await();
+                        return null;
+                    }
+                })
+                .addArtifact("Queued", new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return null;
+                    }
+                });
+        final WarmUpService service = WarmUpService.start(manifest, 1);
+        started.await();
+
+        // When the warm up is cancelled
+        service.cancel();
+        release.countDown();
+
+        // Then waiting for the artifacts should return instead of blocking
+        assertFalse(service.awaitAll());
+        assertFalse(service.await("Queued"));
+        assertTrue(service.isDone());
+    }
+}
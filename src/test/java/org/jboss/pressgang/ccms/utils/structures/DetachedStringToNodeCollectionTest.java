@@ -0,0 +1,75 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.structures;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.jboss.pressgang.ccms.utils.common.DocBookUtilities;
+import org.jboss.pressgang.ccms.utils.common.XMLUtilities;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+public class DetachedStringToNodeCollectionTest {
+    private static final String XML = "<section><title>A Title</title><para>Some <emphasis>text</emphasis></para></section>";
+
+    @Test
+    public void shouldBindToACopyOfTheDocument() throws SAXException {
+        // Given collections that have been detached from a document
+        final Document doc = XMLUtilities.convertStringToDocument(XML);
+        final List<DetachedStringToNodeCollection> detached = DetachedStringToNodeCollection.detach(doc,
+                DocBookUtilities.getTranslatableStringsV3(doc, false));
+
+        // When binding them to another copy of the document
+        final Document copy = XMLUtilities.convertStringToDocument(XML);
+        final List<StringToNodeCollection> bound = DetachedStringToNodeCollection.bind(copy, detached);
+
+        // Then the collections should refer to the nodes in the copy
+        assertThat(bound.size(), is(2));
+        assertThat(bound.get(0).getTranslationString(), is("A Title"));
+        assertThat(bound.get(0).getNodeCollections().get(0).get(0).getNodeValue(), is("A Title"));
+        assertThat(bound.get(0).getNodeCollections().get(0).get(0).getOwnerDocument() == copy, is(true));
+        assertThat(bound.get(1).getNodeCollections().get(0).size(), is(2));
+        assertThat(bound.get(1).getNodeCollections().get(0).get(1).getNodeName(), is("emphasis"));
+    }
+
+    @Test
+    public void shouldNotBindToADifferentDocument() throws SAXException {
+        // Given collections that have been detached from a document
+        final Document doc = XMLUtilities.convertStringToDocument(XML);
+        final List<DetachedStringToNodeCollection> detached = DetachedStringToNodeCollection.detach(doc,
+                DocBookUtilities.getTranslatableStringsV3(doc, false));
+
+        // When binding them to a different document
+        final Document other = XMLUtilities.convertStringToDocument(XML.replace("A Title", "Another Title"));
+        try {
+            DetachedStringToNodeCollection.bind(other, detached);
+
+            // Then an exception should be thrown
+            fail("The collections should not be bound to a different document");
+        } catch (IllegalArgumentException e) {
+            assertThat(detached.get(0).getDocumentHash().equals(XMLUtilities.getDocumentHash(other)), is(false));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jboss.pressgang.ccms.utils.common.FileUtilities;
+import org.junit.Test;
+
+public class RenderCacheTest {
+
+    @Test
+    public void shouldCreateTheSameKeyRegardlessOfParameterOrder() {
+        // Given the same parameters added in different orders
+        final Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("a", "1");
+        params.put("b", "2");
+        final Map<String, String> reversedParams = new LinkedHashMap<String, String>();
+        reversedParams.put("b", "2");
+        reversedParams.put("a", "1");
+
+        // When creating the keys
+        final String key = RenderCache.createKey("<section/>", "<xsl:stylesheet/>", "html.xsl", null, params);
+        final String reversedKey = RenderCache.createKey("<section/>", "<xsl:stylesheet/>", "html.xsl", null, reversedParams);
+
+        // Then they should be the same, but different to a key with other parameters
+        assertThat(key, is(reversedKey));
+        assertThat(key.equals(RenderCache.createKey("<section/>", "<xsl:stylesheet/>", "html.xsl", null,
+                new HashMap<String, String>())),
+                is(false));
+    }
+
+    @Test
+    public void shouldCreateDifferentKeysForDifferentResourcesAndParameters() throws IOException {
+        // Given the same parameters split in different places, and resource packs with different content
+        final Map<String, String> params = new HashMap<String, String>();
+        params.put("a", "1\u0000b=2");
+        final Map<String, String> splitParams = new HashMap<String, String>();
+        splitParams.put("a", "1");
+        splitParams.put("b", "2");
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("common.xsl", "<xsl:stylesheet/>".getBytes("UTF-8"));
+        final ResourcePack resources = ResourcePack.fromMap(files);
+        files.put("common.xsl", "<xsl:stylesheet version=\"1.0\"/>".getBytes("UTF-8"));
+        final ResourcePack changedResources = ResourcePack.fromMap(files);
+
+        // When creating the keys
+        final String key = RenderCache.createKey("<section/>", "<xsl:stylesheet/>", "html.xsl", resources, params);
+
+        // Then none of them should be the same
+        assertThat(key.equals(RenderCache.createKey("<section/>", "<xsl:stylesheet/>", "html.xsl", resources, splitParams)), is(false));
+        assertThat(key.equals(RenderCache.createKey("<section/>", "<xsl:stylesheet/>", "html.xsl", changedResources, params)),
+                is(false));
+        assertThat(key, is(RenderCache.createKey("<section/>", "<xsl:stylesheet/>", "html.xsl", ResourcePack.fromMap(
+                Collections.singletonMap("common.xsl", "<xsl:stylesheet/>".getBytes("UTF-8"))), params)));
+    }
+
+    @Test
+    public void shouldEvictTheLeastRecentlyUsedOutputWhenFull() {
+        // Given a cache that can hold 20 characters
+        final RenderCache cache = new RenderCache(40);
+        cache.put("first", "0123456789");
+        cache.put("second", "0123456789");
+        // and the first output was used most recently
+        cache.get("first");
+
+        // When more output is added
+        cache.put("third", "01234");
+
+        // Then the least recently used output should have been removed
+        assertThat(cache.get("first"), is("0123456789"));
+        assertNull(cache.get("second"));
+        assertThat(cache.get("third"), is("01234"));
+        assertThat(cache.getMemorySize(), is(30L));
+    }
+
+    @Test
+    public void shouldReadOutputFromTheDiskTier() throws IOException {
+        // Given output saved by a cache with a disk tier
+        final File directory = File.createTempFile("render", "cache");
+        directory.delete();
+        try {
+            new RenderCache(1000, directory).put("key", "<html/>");
+
+            // When the output is requested from a new cache using the same directory
+            final RenderCache cache = new RenderCache(1000, directory);
+
+            // Then the output should be found
+            assertThat(cache.get("key"), is("<html/>"));
+            assertThat(cache.getHitCount(), is(1L));
+        } finally {
+            FileUtilities.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void shouldTreatAnEmptyDiskEntryAsAMiss() throws IOException {
+        // Given a disk tier where the output for a key has been truncated
+        final File directory = File.createTempFile("render", "cache");
+        directory.delete();
+        try {
+            final RenderCache cache = new RenderCache(1000, directory);
+            FileUtilities.saveFile(new File(directory, "key"), "", "UTF-8");
+
+            // When the output is requested twice
+            final String output = cache.get("key");
+            final String secondOutput = cache.get("key");
+
+            // Then both requests should miss, since the empty output shouldn't have been held in memory
+            assertNull(output);
+            assertNull(secondOutput);
+            assertThat(cache.getHitCount(), is(0L));
+            assertThat(cache.getMissCount(), is(2L));
+            assertThat(cache.getMemorySize(), is(0L));
+        } finally {
+            FileUtilities.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void shouldEvictTheLeastRecentlyUsedFilesWhenTheDiskTierIsFull() throws IOException {
+        // Given a cache with a disk tier that can hold 20 bytes, and no memory tier
+        final File directory = File.createTempFile("render", "cache");
+        directory.delete();
+        try {
+            final RenderCache cache = new RenderCache(0, directory, 20);
+            cache.put("first", "0123456789");
+            cache.put("second", "0123456789");
+            cache.get("first");
+
+            // When more output is added
+            cache.put("third", "0123456789");
+
+            // Then the least recently used file should have been deleted
+            assertThat(cache.getDiskSize(), is(20L));
+            assertThat(new File(directory, "second").exists(), is(false));
+            assertThat(cache.get("first"), is("0123456789"));
+            assertThat(cache.get("third"), is("0123456789"));
+            // and a new cache should find the remaining files
+            assertThat(new RenderCache(0, directory, 20).getDiskSize(), is(20L));
+        } finally {
+            FileUtilities.deleteDir(directory);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.structures;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ResourcePackTest {
+
+    @Test
+    public void shouldReadBackWrittenResources() throws IOException {
+        // Given a set of resources
+        final Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        files.put("docbook.dtd", "<!ELEMENT section ANY>".getBytes("UTF-8"));
+        files.put("http://docbook.sourceforge.net/xsl/html/docbook.xsl", "<xsl:stylesheet />".getBytes("UTF-8"));
+        files.put("empty.ent", new byte[0]);
+        // and a pack file they are written to
+        final File packFile = File.createTempFile("resources", ".pack");
+        packFile.deleteOnExit();
+        ResourcePack.write(packFile, files);
+
+        // When opening the pack
+        final ResourcePack pack = ResourcePack.open(packFile);
+
+        // Then all the resources should be available with the same content
+        assertThat(pack.size(), is(3));
+        assertThat(new String(pack.getBytes("docbook.dtd"), "UTF-8"), is("<!ELEMENT section ANY>"));
+        assertThat(new String(pack.getBytes("http://docbook.sourceforge.net/xsl/html/docbook.xsl"), "UTF-8"), is("<xsl:stylesheet />"));
+        assertThat(pack.getBytes("empty.ent").length, is(0));
+        assertFalse(pack.contains("missing.dtd"));
+        assertNull(pack.getInputStream("missing.dtd"));
+        // and opening the pack again should reuse the existing mapping
+        assertSame(pack, ResourcePack.open(packFile));
+    }
+
+    @Test
+    public void shouldHandOutIndependentStreams() throws IOException {
+        // Given a pack created from an in memory map
+        final Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        files.put("test.xsd", new byte[]{1, 2, 3});
+        final ResourcePack pack = ResourcePack.fromMap(files);
+
+        // When reading the same resource twice
+        final InputStream first = pack.getInputStream("test.xsd");
+        final InputStream second = pack.getInputStream("test.xsd");
+        assertThat(first.read(), is(1));
+        assertThat(first.read(), is(2));
+
+        // Then the second stream should not be affected by the first
+        assertThat(second.read(), is(1));
+        assertThat(first.read(), is(3));
+        assertThat(first.read(), is(-1));
+        assertTrue(pack.contains("test.xsd"));
+    }
+
+    @Test
+    public void shouldIdentifyPacksByTheirContent() throws IOException {
+        // Given two packs created from the same arrays, and one created from a copy with different content
+        final Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        files.put("docbook.dtd", "<!ELEMENT section ANY>".getBytes("UTF-8"));
+        files.put("docbook.ent", "<!ENTITY nbsp \"&#160;\">".getBytes("UTF-8"));
+        final ResourcePack pack = ResourcePack.fromMap(files);
+        final ResourcePack samePack = ResourcePack.fromMap(files);
+        final Map<String, byte[]> changedFiles = new LinkedHashMap<String, byte[]>(files);
+        changedFiles.put("docbook.dtd", "<!ELEMENT para ANY>".getBytes("UTF-8"));
+        final ResourcePack changedPack = ResourcePack.fromMap(changedFiles);
+
+        // When getting the content hashes
+        final String hash = pack.getContentHash();
+
+        // Then only the packs with the same content should share a hash
+        assertThat(samePack.getContentHash(), is(hash));
+        assertThat(samePack.getContentHash("docbook.ent"), is(pack.getContentHash("docbook.ent")));
+        assertFalse(changedPack.getContentHash().equals(hash));
+        assertThat(changedPack.getContentHash("docbook.ent"), is(pack.getContentHash("docbook.ent")));
+    }
+
+    @Test
+    public void shouldReopenAPackThatHasBeenRewritten() throws IOException {
+        // Given a pack that has been opened
+        final Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        files.put("docbook.dtd", "<!ELEMENT section ANY>".getBytes("UTF-8"));
+        final File packFile = File.createTempFile("resources", ".pack");
+        packFile.deleteOnExit();
+        ResourcePack.write(packFile, files);
+        final ResourcePack originalPack = ResourcePack.open(packFile);
+
+        // When the pack is rewritten with different content and opened again
+        files.put("docbook.dtd", "<!ELEMENT para ANY>".getBytes("UTF-8"));
+        files.put("docbook.ent", "<!ENTITY nbsp \"&#160;\">".getBytes("UTF-8"));
+        ResourcePack.write(packFile, files);
+        final ResourcePack pack = ResourcePack.open(packFile);
+
+        // Then the new content should be returned
+        assertThat(pack.size(), is(2));
+        assertThat(new String(pack.getBytes("docbook.dtd"), "UTF-8"), is("<!ELEMENT para ANY>"));
+        // and the original pack should still be readable
+        assertThat(new String(originalPack.getBytes("docbook.dtd"), "UTF-8"), is("<!ELEMENT section ANY>"));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectAPackWithANegativeLength() throws IOException {
+        // Given a pack file with an entry that has a negative length
+        final File packFile = File.createTempFile("resources", ".pack");
+        packFile.deleteOnExit();
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(packFile));
+        try {
+            out.writeInt(0x50475250);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeShort(1);
+            out.write('a');
+            out.writeLong(27);
+            out.writeInt(-1);
+        } finally {
+            out.close();
+        }
+
+        // When opening the pack, then an IOException should be thrown
+        ResourcePack.open(packFile);
+    }
+}
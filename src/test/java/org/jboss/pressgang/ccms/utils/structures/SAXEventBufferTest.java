@@ -0,0 +1,109 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.structures;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class SAXEventBufferTest {
+    private static final String XML = "<?xml version=\"1.0\"?>\n" +
+            "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"1.0\">" +
+            "<?pi data?><xsl:template match=\"para\"><p class=\"x\">Text &amp; more</p></xsl:template></xsl:stylesheet>";
+
+    @Test
+    public void shouldReplayTheSameDocumentFromMultipleThreads() throws Exception {
+        // Given a buffer of a parsed document, and the document copied without using the buffer
+        final SAXEventBuffer buffer = SAXEventBuffer.parse(new InputSource(new StringReader(XML)));
+        final String expected = copy(new StreamSource(new StringReader(XML)));
+
+        // When the buffer is replayed by multiple threads at once
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<String>> copies = new ArrayList<Future<String>>();
+        try {
+            for (int i = 0; i < 20; i++) {
+                copies.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return copy(buffer.asSource("test.xsl"));
+                    }
+                }));
+            }
+
+            // Then every copy should be the same as the original document
+            for (final Future<String> copy : copies) {
+                assertThat(copy.get(), is(expected));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldOnlyReportNamespaceDeclarationsAsAttributesWhenRequested() throws Exception {
+        // Given a buffer of a document that declares a namespace
+        final SAXEventBuffer buffer = SAXEventBuffer.parse(new InputSource(new StringReader(XML)));
+        final List<Integer> attributeCounts = new ArrayList<Integer>();
+        final DefaultHandler handler = new DefaultHandler() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+                if (localName.equals("stylesheet")) {
+                    attributeCounts.add(attributes.getLength());
+                    // Changing the attributes shouldn't change the buffer
+                    ((AttributesImpl) attributes).clear();
+                }
+            }
+        };
+
+        // When the buffer is replayed with and without the namespace declarations
+        buffer.replay(handler, "test.xsl", true);
+        buffer.replay(handler, "test.xsl", false);
+        buffer.replay(handler, "test.xsl", true);
+
+        // Then the declaration should only be included when requested
+        assertThat(attributeCounts.get(0), is(2));
+        assertThat(attributeCounts.get(1), is(1));
+        assertThat(attributeCounts.get(2), is(2));
+    }
+
+    private static String copy(final Source source) throws Exception {
+        final StringWriter writer = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().transform(source, new StreamResult(writer));
+        return writer.toString();
+    }
+}
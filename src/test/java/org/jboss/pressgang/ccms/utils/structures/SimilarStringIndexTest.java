@@ -0,0 +1,174 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jboss.pressgang.ccms.utils.common.StringUtilities;
+import org.junit.Test;
+
+public class SimilarStringIndexTest {
+    private static final String[] WORDS = {"the", "server", "configure", "install", "package", "client", "open", "file", "set", "port",
+            "restart", "service", "and", "to", "a", "of", "for", "using", "attribute", "directory", "user", "run", "command", "system",
+            "start", "stop", "edit", "create", "remove", "update", "network", "database", "table", "value", "option", "default"};
+
+
+    @Test
+    public void shouldFindTheSameStringsAsAComparisonWithEveryString() {
+        // Given an index of strings
+        final List<String> strings = Arrays.asList("Configure the server", "Configure the servers", "Configure a server",
+                "Install the client", "Install the clients.", "Remove the server", "Configure the <command>server</command>", "",
+                "Configure the server");
+        final SimilarStringIndex index = new SimilarStringIndex(strings);
+
+        // When similar strings are found
+        final List<SimilarStringIndex.Match> matches = index.findSimilar("Configure teh server", 0.8);
+
+        // Then the matches should be the strings that are similar enough, with the most similar first
+        final List<String> expected = new ArrayList<String>();
+        for (final String value : Arrays.asList("Configure the server", "Configure the servers", "Configure a server")) {
+            assertThat(StringUtilities.similarLevenshtein("Configure teh server", value) >= 0.8, is(true));
+            expected.add(value);
+        }
+        final List<String> values = new ArrayList<String>();
+        for (final SimilarStringIndex.Match match : matches) {
+            values.add(match.getValue());
+        }
+        assertThat(index.size(), is(8));
+        assertThat(values, is(expected));
+        assertThat(matches.get(0).getSimilarity(), is(StringUtilities.similarLevenshtein("Configure teh server", "Configure the server")));
+    }
+
+    @Test
+    public void shouldFindStringsThatAreExactlyAsSimilarAsTheThreshold() {
+        // Given an index of strings that are exactly 90% and 70% similar to the query
+        final SimilarStringIndex index = new SimilarStringIndex(Arrays.asList("abcdefghix", "abcdefg", "abcdef", "xyz"));
+        assertThat(StringUtilities.similarLevenshtein("abcdefghij", "abcdefghix"), is(0.9));
+        assertThat(StringUtilities.similarLevenshtein("abcdefghij", "abcdefg"), is(0.7));
+
+        // When similar strings are found with those thresholds
+        final List<SimilarStringIndex.Match> closeMatches = index.findSimilar("abcdefghij", 0.9);
+        final List<SimilarStringIndex.Match> matches = index.findSimilar("abcdefghij", 0.7);
+
+        // Then the strings on the threshold should be found
+        assertThat(closeMatches.size(), is(1));
+        assertThat(closeMatches.get(0).getValue(), is("abcdefghix"));
+        assertThat(matches.size(), is(2));
+        assertThat(matches.get(0).getValue(), is("abcdefghix"));
+        assertThat(matches.get(1).getValue(), is("abcdefg"));
+    }
+
+    /**
+     * Compares searching the index with comparing the query against every string, for 100,000 generated sentences of which about a
+     * third are near duplicates of another sentence. This takes a few minutes, so it is only run when the "benchmark" system property
+     * is set to true, eg "mvn test -Dtest=SimilarStringIndexTest -Dbenchmark=true".
+     */
+    @Test
+    public void shouldBeFasterThanComparingEveryString() {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+
+        // Given an index of 100,000 sentences, and queries that are edited copies of some of the sentences
+        final Random random = new Random(48);
+        final List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < 100000; i++) {
+            strings.add(i % 3 == 2 ? mutate(strings.get(random.nextInt(i)), random) : generateSentence(random));
+        }
+        final List<String> queries = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            queries.add(mutate(strings.get(random.nextInt(strings.size())), random));
+        }
+
+        long start = System.currentTimeMillis();
+        final SimilarStringIndex index = new SimilarStringIndex(strings);
+        System.out.println("Built an index of " + strings.size() + " strings in " + (System.currentTimeMillis() - start) + " ms");
+
+        for (final double threshold : new double[]{0.9, 0.8}) {
+            // When finding the similar strings using the index and by comparing every string
+            long indexTime = 0;
+            long bruteForceTime = 0;
+            for (final String query : queries) {
+                start = System.currentTimeMillis();
+                final List<String> values = new ArrayList<String>();
+                for (final SimilarStringIndex.Match match : index.findSimilar(query, threshold)) {
+                    values.add(match.getValue());
+                }
+                indexTime += System.currentTimeMillis() - start;
+
+                start = System.currentTimeMillis();
+                final List<String> expected = new ArrayList<String>();
+                for (final String value : strings) {
+                    if (StringUtilities.similarLevenshtein(query, value) >= threshold) {
+                        expected.add(value);
+                    }
+                }
+                bruteForceTime += System.currentTimeMillis() - start;
+
+                // Then the same strings should be found
+                Collections.sort(values);
+                Collections.sort(expected);
+                assertThat(values, is(expected));
+            }
+
+            System.out.println("Threshold " + threshold + ": " + indexTime / queries.size() + " ms per query using the index, "
+                    + bruteForceTime / queries.size() + " ms per query comparing every string");
+        }
+    }
+
+    private static String generateSentence(final Random random) {
+        final StringBuilder sentence = new StringBuilder();
+        final int words = 4 + random.nextInt(12);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sentence.append(' ');
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+
+        return sentence.append('.').toString();
+    }
+
+    /**
+     * Makes a near duplicate of a string, by changing one to three of its characters.
+     */
+    private static String mutate(final String value, final Random random) {
+        final StringBuilder mutated = new StringBuilder(value);
+        final int edits = 1 + random.nextInt(3);
+        for (int i = 0; i < edits; i++) {
+            final int position = random.nextInt(mutated.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    mutated.setCharAt(position, (char) ('a' + random.nextInt(26)));
+                    break;
+                case 1:
+                    mutated.insert(position, (char) ('a' + random.nextInt(26)));
+                    break;
+                default:
+                    if (mutated.length() > 1) mutated.deleteCharAt(position);
+            }
+        }
+
+        return mutated.toString();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TemplatesCacheTest {
+
+    @Test
+    public void shouldOnlyCompileEachStylesheetOnce() throws TransformerException {
+        // Given a cache
+        final TemplatesCache cache = new TemplatesCache(10);
+        final CountingCompiler compiler = new CountingCompiler();
+
+        // When the same stylesheet is requested twice
+        final Templates first = cache.get("html.xsl", "hash1", compiler);
+        final Templates second = cache.get("html.xsl", "hash1", compiler);
+
+        // Then it should only have been compiled once
+        assertSame(first, second);
+        assertThat(compiler.count.get(), is(1));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void shouldRecompileWhenTheStylesheetChangesOrIsInvalidated() throws TransformerException {
+        // Given a cache with a compiled stylesheet
+        final TemplatesCache cache = new TemplatesCache(10);
+        final CountingCompiler compiler = new CountingCompiler();
+        final Templates original = cache.get("html.xsl", "hash1", compiler);
+
+        // When the stylesheet content changes
+        final Templates changed = cache.get("html.xsl", "hash2", compiler);
+        // and the stylesheet is invalidated
+        cache.invalidate("html.xsl");
+        cache.get("html.xsl", "hash2", compiler);
+
+        // Then the stylesheet should have been recompiled each time
+        assertNotSame(original, changed);
+        assertThat(compiler.count.get(), is(3));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void shouldEvictTheLeastRecentlyUsedStylesheet() throws TransformerException {
+        // Given a full cache
+        final TemplatesCache cache = new TemplatesCache(2);
+        final CountingCompiler compiler = new CountingCompiler();
+        cache.get("html.xsl", "hash", compiler);
+        cache.get("pdf.xsl", "hash", compiler);
+        // and the first stylesheet was used more recently than the second
+        cache.get("html.xsl", "hash", compiler);
+
+        // When another stylesheet is added
+        cache.get("epub.xsl", "hash", compiler);
+
+        // Then the least recently used stylesheet should have been evicted
+        assertThat(cache.size(), is(2));
+        assertThat(cache.getEvictionCount(), is(1L));
+        cache.get("html.xsl", "hash", compiler);
+        assertThat(compiler.count.get(), is(3));
+        cache.get("pdf.xsl", "hash", compiler);
+        assertThat(compiler.count.get(), is(4));
+    }
+
+    private static class CountingCompiler implements Callable<Templates> {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Templates call() throws Exception {
+            count.incrementAndGet();
+            return new Templates() {
+                @Override
+                public Transformer newTransformer() {
+                    return null;
+                }
+
+                @Override
+                public Properties getOutputProperties() {
+                    return new Properties();
+                }
+            };
+        }
+    }
+}
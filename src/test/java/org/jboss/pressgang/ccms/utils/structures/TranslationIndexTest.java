@@ -0,0 +1,59 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.utils.structures;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TranslationIndexTest {
+
+    @Test
+    public void shouldMatchStringsThatHadTheirPaddingRemoved() {
+        // Given translations for trimmed strings and a string that kept its padding
+        final Map<String, String> translations = new HashMap<String, String>();
+        translations.put("Some text", "Du texte");
+        translations.put("Padded ", "Rembourré ");
+        translations.put("  Padded", "  Rembourré");
+        translations.put("Other text", "Autre texte");
+
+        // When looking up the source strings
+        final TranslationIndex index = new TranslationIndex(translations);
+        final TranslationIndex.Match exact = index.find("Some text");
+        final TranslationIndex.Match leftTrimmed = index.find("  Padded ");
+        final TranslationIndex.Match trimmed = index.find("\n  Other text  ");
+
+        // Then the best match should be found, along with the padding that was removed
+        assertThat(exact.getTranslation(), is("Du texte"));
+        assertThat(exact.getLeftTrimCount(), is(0));
+        assertThat(exact.getRightTrimCount(), is(0));
+        assertThat(leftTrimmed.getFixedString(), is("Padded "));
+        assertThat(leftTrimmed.getLeftTrimCount(), is(2));
+        assertThat(leftTrimmed.getRightTrimCount(), is(0));
+        assertThat(trimmed.getTranslation(), is("Autre texte"));
+        assertNull(index.find("Missing text"));
+        assertThat(index.size(), is(4));
+    }
+}
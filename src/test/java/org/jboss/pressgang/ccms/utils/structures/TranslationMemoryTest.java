@@ -0,0 +1,140 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.pressgang.ccms.utils.common.FileUtilities;
+import org.junit.Test;
+
+public class TranslationMemoryTest {
+
+    @Test
+    public void shouldKeepTranslationsWhenReopened() throws IOException {
+        // Given a translation memory with more translations than fit in the initial index
+        final File directory = File.createTempFile("translation", "memory");
+        directory.delete();
+        try {
+            TranslationMemory translationMemory = TranslationMemory.open(directory);
+            for (int i = 0; i < 2000; i++) {
+                translationMemory.put("fr", "String " + i, "Cha\u00eene " + i);
+            }
+            translationMemory.put("de", "String 1", "Zeichenkette 1");
+            translationMemory.put("fr", "String 1", "Cha\u00eene un");
+            translationMemory.close();
+
+            // When it is reopened after the index has been lost
+            new File(directory, "translations.idx").delete();
+            translationMemory = TranslationMemory.open(directory);
+
+            // Then the latest translation for each locale should be found
+            try {
+                assertThat(translationMemory.size(), is(2001));
+                assertThat(translationMemory.get("fr", "String 1"), is("Cha\u00eene un"));
+                assertThat(translationMemory.get("de", "String 1"), is("Zeichenkette 1"));
+                assertThat(translationMemory.get("fr", "String 1999"), is("Cha\u00eene 1999"));
+                assertNull(translationMemory.get("de", "String 2"));
+            } finally {
+                translationMemory.close();
+            }
+        } finally {
+            FileUtilities.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void shouldStayOpenUntilEveryCallerHasClosedIt() throws IOException {
+        // Given a translation memory that has been opened twice
+        final File directory = File.createTempFile("translation", "memory");
+        directory.delete();
+        try {
+            final TranslationMemory translationMemory = TranslationMemory.open(directory);
+            assertSame(translationMemory, TranslationMemory.open(directory));
+
+            // When one caller closes it
+            translationMemory.close();
+
+            // Then the other caller should still be able to add and read back translations
+            for (int i = 0; i < 500; i++) {
+                translationMemory.put("fr", "String " + i, "Cha\u00eene " + i);
+                assertThat(translationMemory.get("fr", "String " + i), is("Cha\u00eene " + i));
+            }
+            assertThat(translationMemory.get("fr", "String 0"), is("Cha\u00eene 0"));
+            translationMemory.close();
+            // and it should be closed once both callers have closed it
+            try {
+                translationMemory.get("fr", "String 0");
+                fail("The translation memory should have been closed");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        } finally {
+            FileUtilities.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void shouldOnlyRequestMissingTranslationsFromTheProvider() throws IOException {
+        // Given a translation memory that holds one of the translations
+        final File directory = File.createTempFile("translation", "memory");
+        directory.delete();
+        final TranslationMemory translationMemory = TranslationMemory.open(directory);
+        try {
+            translationMemory.put("fr", "A Title", "Un Titre");
+            // and a provider that returns translations with the padding removed
+            final List<Set<String>> requests = new ArrayList<Set<String>>();
+            final TranslationMemory.TranslationProvider provider = new TranslationMemory.TranslationProvider() {
+                @Override
+                public Map<String, String> getTranslations(final String locale, final Set<String> sourceStrings) {
+                    requests.add(sourceStrings);
+                    final Map<String, String> translations = new HashMap<String, String>();
+                    translations.put("Some text", "Du texte");
+                    return translations;
+                }
+            };
+
+            // When the translations are requested twice
+            translationMemory.getTranslations("fr", Arrays.asList("A Title", " Some text", "Untranslated"), provider);
+            final Map<String, String> translations = translationMemory.getTranslations("fr",
+                    Arrays.asList("A Title", " Some text"), provider);
+
+            // Then only the missing strings should have been requested, and the padding should have been kept
+            assertThat(requests.size(), is(1));
+            assertThat(requests.get(0).size(), is(2));
+            assertThat(translations.get("A Title"), is("Un Titre"));
+            assertThat(translations.get(" Some text"), is(" Du texte"));
+        } finally {
+            translationMemory.close();
+            FileUtilities.deleteDir(directory);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.utils.structures;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class TranslationStringListTest {
+
+    @Test
+    public void shouldKeepInsertionOrderAndFindTheFirstMatchingString() {
+        // Given a list with a duplicate translation string
+        final TranslationStringList list = new TranslationStringList();
+        final StringToNodeCollection first = new StringToNodeCollection("First");
+        final StringToNodeCollection second = new StringToNodeCollection("Second");
+        final StringToNodeCollection duplicate = new StringToNodeCollection("First");
+        list.add(first);
+        list.add(second);
+        list.add(duplicate);
+
+        // When looking up the strings
+        final StringToNodeCollection found = list.findByTranslationString("First");
+
+        // Then the items should be in the order they were added, and the first match should be found
+        assertThat(list.size(), is(3));
+        assertSame(list.get(0), first);
+        assertSame(list.get(2), duplicate);
+        assertSame(found, first);
+        assertNull(list.findByTranslationString("Third"));
+    }
+
+    @Test
+    public void shouldReindexWhenAnItemIsRemoved() {
+        // Given a list with a duplicate translation string
+        final TranslationStringList list = new TranslationStringList();
+        final StringToNodeCollection first = new StringToNodeCollection("First");
+        final StringToNodeCollection duplicate = new StringToNodeCollection("First");
+        list.add(first);
+        list.add(duplicate);
+
+        // When the first item is removed
+        list.remove(0);
+
+        // Then the duplicate should be found instead
+        assertSame(list.findByTranslationString("First"), duplicate);
+        list.remove(duplicate);
+        assertNull(list.findByTranslationString("First"));
+    }
+}